@@ -0,0 +1,223 @@
+package examples.avoid-testing-implementation-details;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Example demonstrating batch card validation with Vector API lanes.
+ *
+ * Key Points:
+ * 1. BatchCardValidator.validateAll checks many fixed-width card numbers in one call
+ * 2. VectorizedLuhn transposes a block of cards so each lane holds one card, then sums digit columns
+ * 3. Without the jdk.incubator.vector module, validateAll falls back to the scalar isValid loop
+ * 4. An equivalence test pins the vector path to the scalar results
+ *
+ * Only this file imports jdk.incubator.vector, so only it needs --add-modules
+ * jdk.incubator.vector to compile; CreditCardValidatorExample compiles without it. At
+ * run time the flag is optional: without it validateAll uses the scalar loop.
+ */
+
+// ============================================================================
+// PRODUCTION CODE
+// ============================================================================
+
+/**
+ * Validates many fixed-width card numbers in one call, with the same results as
+ * calling CreditCardValidator.isValid on each of them.
+ */
+final class BatchCardValidator {
+    // The vector path is only linked when the module was added at run time, otherwise validateAll stays scalar
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final CreditCardValidator validator;
+
+    BatchCardValidator(CreditCardValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Validates count card numbers of panLength ASCII digits each, stored back to back.
+     * Sets bit i of out if card i is valid and clears it otherwise, with the same
+     * result as isValid(packedPans, i * panLength, panLength).
+     */
+    public void validateAll(byte[] packedPans, int panLength, int count, BitSet out) {
+        Objects.checkFromIndexSize(0, Math.multiplyExact(panLength, count), packedPans.length);
+        if (panLength < CreditCardValidator.MIN_LENGTH || panLength > CreditCardValidator.MAX_LENGTH) {
+            out.clear(0, count);
+        } else if (VECTOR_API_AVAILABLE) {
+            VectorizedLuhn.validateAll(packedPans, panLength, count, out);
+        } else {
+            validateAllScalar(packedPans, panLength, count, out);
+        }
+    }
+
+    void validateAllScalar(byte[] packedPans, int panLength, int count, BitSet out) {
+        for (int card = 0; card < count; card++) {
+            out.set(card, validator.isValid(packedPans, card * panLength, panLength));
+        }
+    }
+}
+
+/**
+ * Luhn and digit checks for packed ASCII card numbers using the platform's preferred vector size.
+ *
+ * Cards are checked SPECIES.length() at a time. A block of cards is first copied
+ * column by column into a scratch array, so that row d holds digit d of every card
+ * and lane c of each row belongs to card c. The Luhn sum then runs down the rows:
+ * one vector subtract, range check, optional doubling and add per digit position
+ * checks a digit of every card in the block at once. Whether a row is doubled
+ * depends only on panLength, so no lane masks are needed, and the sum is kept
+ * modulo 10 after every add so the byte lanes never wrap. Only cards that pass
+ * get the scalar prefix check. A final short block reuses the same code; lanes
+ * past the last card hold stale digits and their results are discarded.
+ *
+ * Only referenced once BatchCardValidator has checked that the module is present.
+ */
+final class VectorizedLuhn {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorizedLuhn() {
+    }
+
+    static void validateAll(byte[] packedPans, int panLength, int count, BitSet out) {
+        int lanes = SPECIES.length();
+        // At most 19 rows of 64 lanes, so allocating per call is cheaper than sharing it safely
+        byte[] columns = new byte[panLength * lanes];
+        for (int first = 0; first < count; first += lanes) {
+            int cards = Math.min(lanes, count - first);
+            transpose(packedPans, first * panLength, panLength, cards, columns, lanes);
+            long passed = luhnValid(columns, panLength, lanes) & (-1L >>> (Long.SIZE - cards));
+            out.clear(first, first + cards);
+            for (; passed != 0; passed &= passed - 1) {
+                int card = first + Long.numberOfTrailingZeros(passed);
+                out.set(card, CreditCardValidator.hasKnownPrefix(packedPans, card * panLength, panLength));
+            }
+        }
+    }
+
+    private static void transpose(byte[] packedPans, int offset, int panLength, int cards,
+                                  byte[] columns, int lanes) {
+        for (int card = 0; card < cards; card++) {
+            int from = offset + card * panLength;
+            for (int digit = 0; digit < panLength; digit++) {
+                columns[digit * lanes + card] = packedPans[from + digit];
+            }
+        }
+    }
+
+    // Bit c is set if lane c holds only digits and its Luhn sum is a multiple of 10
+    private static long luhnValid(byte[] columns, int panLength, int lanes) {
+        ByteVector sum = ByteVector.zero(SPECIES);
+        VectorMask<Byte> notDigit = SPECIES.maskAll(false);
+        for (int row = 0; row < panLength; row++) {
+            ByteVector digits = ByteVector.fromArray(SPECIES, columns, row * lanes).sub((byte) '0');
+            notDigit = notDigit.or(digits.compare(VectorOperators.UNSIGNED_GT, 9));
+            if ((panLength - row) % 2 == 0) {
+                digits = digits.add(digits);
+                digits = digits.sub((byte) 9, digits.compare(VectorOperators.GT, 9));
+            }
+            sum = sum.add(digits);
+            sum = sum.sub((byte) 10, sum.compare(VectorOperators.GT, 9));
+        }
+        return sum.compare(VectorOperators.EQ, 0).andNot(notDigit).toLong();
+    }
+}
+
+// ============================================================================
+// TESTS FOR BATCH VALIDATION
+// ============================================================================
+
+class BatchCardValidationTest {
+    private static final String[] PREFIXES = {"4", "51", "55", "34", "37", "6011", "1", "9"};
+    private static final int SAMPLE_CARDS = 5_000;
+    private final BatchCardValidator validator = new BatchCardValidator(new CreditCardValidator());
+
+    @Test
+    void validateAll_mixOfCards_setsBitOfEachValidCard() {
+        // Arrange
+        byte[] packed = ("4532015112830366" + "4532015112830367" + "5555555555554444" + "4532-15112830366")
+                .getBytes(StandardCharsets.US_ASCII);
+        BitSet valid = new BitSet();
+
+        // Act
+        validator.validateAll(packed, 16, 4, valid);
+
+        // Assert
+        assertEquals(BitSet.valueOf(new long[] {0b0101}), valid);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {13, 14, 15, 16, 17, 18, 19})
+    void validateAll_vectorPath_matchesScalarPath(int panLength) {
+        assumeTrue(BatchCardValidator.VECTOR_API_AVAILABLE, "Needs --add-modules jdk.incubator.vector");
+
+        // Arrange
+        byte[] packed = randomPans(new Random(panLength), panLength, SAMPLE_CARDS);
+        BitSet scalar = new BitSet();
+        BitSet vector = new BitSet();
+
+        // Act
+        validator.validateAllScalar(packed, panLength, SAMPLE_CARDS, scalar);
+        VectorizedLuhn.validateAll(packed, panLength, SAMPLE_CARDS, vector);
+
+        // Assert
+        assertEquals(scalar, vector, "Vector and scalar results differ for " + panLength + "-digit cards");
+    }
+
+    // Keeps the equivalence test above meaningful: its samples must include valid cards, not only rejects
+    @ParameterizedTest
+    @ValueSource(ints = {13, 15, 16, 19})
+    void validateAllScalar_sampleOfNetworkLength_findsValidCards(int panLength) {
+        // Arrange
+        byte[] packed = randomPans(new Random(panLength), panLength, SAMPLE_CARDS);
+        BitSet valid = new BitSet();
+
+        // Act
+        validator.validateAllScalar(packed, panLength, SAMPLE_CARDS, valid);
+
+        // Assert
+        assertTrue(valid.cardinality() > 0, "Expected some valid " + panLength + "-digit cards in the sample");
+    }
+
+    @Test
+    void validateAll_cardLengthOutOfRange_clearsEveryBit() {
+        // Arrange
+        BitSet valid = new BitSet();
+        valid.set(0, 2);
+
+        // Act
+        validator.validateAll("45320151128303664532015112".getBytes(StandardCharsets.US_ASCII), 13, 2, valid);
+        validator.validateAll("4532015112".getBytes(StandardCharsets.US_ASCII), 10, 1, valid);
+
+        // Assert
+        assertTrue(valid.isEmpty());
+    }
+
+    // Random digits after a known or unknown prefix, with an occasional non-digit; about 1 in 10 pass Luhn
+    private static byte[] randomPans(Random random, int panLength, int count) {
+        byte[] packed = new byte[panLength * count];
+        for (int card = 0; card < count; card++) {
+            byte[] prefix = PREFIXES[random.nextInt(PREFIXES.length)].getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < panLength; i++) {
+                packed[card * panLength + i] = i < prefix.length ? prefix[i] : (byte) ('0' + random.nextInt(10));
+            }
+            if (random.nextInt(50) == 0) {
+                packed[card * panLength + random.nextInt(panLength)] = (byte) ("-/: ".charAt(random.nextInt(4)));
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,275 @@
+package examples.avoid-testing-implementation-details;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating the CreditCardValidator behind the tests in AvoidTestImplementationExample.
+ *
+ * Key Points:
+ * 1. isValid checks digits, length, card network prefix and the Luhn checksum
+ * 2. Overloads accept CharSequence, char[] and ASCII byte[]/ByteBuffer without allocating
+ * 3. The Luhn sum uses a precomputed table instead of doubling digits in an int[]
+ * 4. Tests check public results only, so the checksum code can change freely
+ */
+
+// ============================================================================
+// PRODUCTION CODE
+// ============================================================================
+
+enum CardType {
+    VISA, MASTERCARD, AMEX, DISCOVER, UNKNOWN
+}
+
+/**
+ * Result of CreditCardValidator.validate, with one message per failed check.
+ */
+final class ValidationResult {
+    private final List<String> errors;
+
+    ValidationResult(List<String> errors) {
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public boolean isValid() { return errors.isEmpty(); }
+    public List<String> getErrors() { return errors; }
+}
+
+/**
+ * Validates card numbers: 13 to 19 ASCII digits, a known network prefix and
+ * length, and a correct Luhn checksum.
+ *
+ * Every isValid overload reads its input directly, once, left to right, and
+ * hands each character to addDigit, which adds the digit's Luhn contribution
+ * from LUHN_TABLE: the digit itself, or the digit doubled with its digits
+ * summed, depending on its distance from the check digit. The loops differ
+ * only in how they read a character, and none allocates: there is no accessor
+ * object, the running sum and prefix share one long, and a heap ByteBuffer uses
+ * the byte[] overload on its backing array.
+ */
+class CreditCardValidator {
+    static final int MIN_LENGTH = 13;
+    static final int MAX_LENGTH = 19;
+    private static final int PREFIX_DIGITS = 4;
+    // addDigit's state once a non-digit was seen; a real state is never negative
+    private static final long NOT_DIGITS = -1;
+
+    // [0..9]: digit as is; [10..19]: digit doubled, with 10..18 reduced to 1..9
+    private static final int[] LUHN_TABLE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9,
+            0, 2, 4, 6, 8, 1, 3, 5, 7, 9
+    };
+
+    public boolean isValid(String cardNumber) {
+        return isValid((CharSequence) cardNumber);
+    }
+
+    public boolean isValid(CharSequence cardNumber) {
+        if (cardNumber == null || !hasCardLength(cardNumber.length())) {
+            return false;
+        }
+        int length = cardNumber.length();
+        long state = 0;
+        for (int i = 0; i < length && state != NOT_DIGITS; i++) {
+            state = addDigit(state, i, length, cardNumber.charAt(i));
+        }
+        return isValidState(state, length);
+    }
+
+    public boolean isValid(char[] cardNumber, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, cardNumber.length);
+        if (!hasCardLength(length)) {
+            return false;
+        }
+        long state = 0;
+        for (int i = 0; i < length && state != NOT_DIGITS; i++) {
+            state = addDigit(state, i, length, cardNumber[offset + i]);
+        }
+        return isValidState(state, length);
+    }
+
+    // ASCII digits, e.g. a field sliced out of a card file without decoding it
+    public boolean isValid(byte[] cardNumber, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, cardNumber.length);
+        if (!hasCardLength(length)) {
+            return false;
+        }
+        long state = 0;
+        for (int i = 0; i < length && state != NOT_DIGITS; i++) {
+            state = addDigit(state, i, length, cardNumber[offset + i]);
+        }
+        return isValidState(state, length);
+    }
+
+    // ASCII digits from position to limit; the buffer's position is not changed
+    public boolean isValid(ByteBuffer cardNumber) {
+        int start = cardNumber.position();
+        int length = cardNumber.remaining();
+        if (cardNumber.hasArray()) {
+            return isValid(cardNumber.array(), cardNumber.arrayOffset() + start, length);
+        }
+        if (!hasCardLength(length)) {
+            return false;
+        }
+        long state = 0;
+        for (int i = 0; i < length && state != NOT_DIGITS; i++) {
+            state = addDigit(state, i, length, cardNumber.get(start + i));
+        }
+        return isValidState(state, length);
+    }
+
+    public ValidationResult validate(String cardNumber) {
+        List<String> errors = new ArrayList<>();
+        if (cardNumber == null || cardNumber.isEmpty()) {
+            errors.add("Card number is required");
+            return new ValidationResult(errors);
+        }
+        boolean allDigits = cardNumber.chars().allMatch(c -> c >= '0' && c <= '9');
+        int length = cardNumber.length();
+        boolean knownFormat = allDigits && length >= MIN_LENGTH && length <= MAX_LENGTH
+                && detectCardType(Integer.parseInt(cardNumber.substring(0, PREFIX_DIGITS)), length) != CardType.UNKNOWN;
+        if (!knownFormat) {
+            errors.add("Invalid card number format");
+        }
+        if (allDigits && luhnSum(cardNumber) % 10 != 0) {
+            errors.add("Invalid card number checksum");
+        }
+        return new ValidationResult(errors);
+    }
+
+    private static boolean hasCardLength(int length) {
+        return length >= MIN_LENGTH && length <= MAX_LENGTH;
+    }
+
+    /**
+     * One step of the loop behind every isValid overload: adds character index of a
+     * length-digit card number to state, which holds the Luhn sum in its low 32 bits
+     * and the first PREFIX_DIGITS digits above them.
+     * @return the new state, or NOT_DIGITS if the character is not an ASCII digit
+     */
+    private static long addDigit(long state, int index, int length, int character) {
+        int digit = character - '0';
+        if (digit < 0 || digit > 9) {
+            return NOT_DIGITS;
+        }
+        long prefix = index < PREFIX_DIGITS ? (state >>> 32) * 10 + digit : state >>> 32;
+        int sum = (int) state + LUHN_TABLE[luhnIndex(length - index, digit)];
+        return prefix << 32 | sum;
+    }
+
+    private static boolean isValidState(long state, int length) {
+        return state != NOT_DIGITS && (int) state % 10 == 0
+                && detectCardType((int) (state >>> 32), length) != CardType.UNKNOWN;
+    }
+
+    // Digits at an even distance from the end (counting the check digit as 1) are doubled
+    private static int luhnIndex(int distanceFromEnd, int digit) {
+        return ((distanceFromEnd + 1) & 1) * 10 + digit;
+    }
+
+    private static int luhnSum(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += LUHN_TABLE[luhnIndex(digits.length() - i, digits.charAt(i) - '0')];
+        }
+        return sum;
+    }
+
+    // Expects ASCII digits; used by the vector path after it has checked them
+    static boolean hasKnownPrefix(byte[] cardNumber, int offset, int length) {
+        int prefix = 0;
+        for (int i = 0; i < PREFIX_DIGITS; i++) {
+            prefix = prefix * 10 + cardNumber[offset + i] - '0';
+        }
+        return detectCardType(prefix, length) != CardType.UNKNOWN;
+    }
+
+    // prefix holds the first four digits of the card number
+    private static CardType detectCardType(int prefix, int length) {
+        if (prefix / 1000 == 4 && (length == 13 || length == 16 || length == 19)) {
+            return CardType.VISA;
+        }
+        if (((prefix >= 5100 && prefix <= 5599) || (prefix >= 2221 && prefix <= 2720)) && length == 16) {
+            return CardType.MASTERCARD;
+        }
+        if ((prefix / 100 == 34 || prefix / 100 == 37) && length == 15) {
+            return CardType.AMEX;
+        }
+        if ((prefix == 6011 || (prefix >= 6440 && prefix <= 6599)) && length >= 16) {
+            return CardType.DISCOVER;
+        }
+        return CardType.UNKNOWN;
+    }
+}
+
+// ============================================================================
+// TESTS FOR CREDIT CARD VALIDATOR
+// ============================================================================
+
+class CreditCardValidatorTest {
+    private static final String VISA = "4532015112830366";
+    private final CreditCardValidator validator = new CreditCardValidator();
+
+    @Test
+    void isValid_validCardsOfEachNetwork_returnsTrue() {
+        // Act & Assert
+        assertTrue(validator.isValid(VISA), "Visa");
+        assertTrue(validator.isValid("5555555555554444"), "Mastercard");
+        assertTrue(validator.isValid("378282246310005"), "Amex");
+        assertTrue(validator.isValid("6011111111111117"), "Discover");
+    }
+
+    @Test
+    void isValid_lastDigitWrong_returnsFalse() {
+        // Act & Assert
+        assertFalse(validator.isValid("4532015112830367"));
+    }
+
+    @Test
+    void isValid_nonDigitOrWrongLength_returnsFalse() {
+        // Act & Assert
+        assertFalse(validator.isValid("4532-0151-1283-0366"));
+        assertFalse(validator.isValid("4532015112"));
+        assertFalse(validator.isValid((String) null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {VISA, "4532015112830367", "5555555555554444", "1234567890123456", "45320151128303x6"})
+    void isValid_eachInputType_agreesWithStringResult(String card) {
+        // Arrange
+        boolean expected = validator.isValid(card);
+        char[] chars = ("  " + card).toCharArray();
+        byte[] bytes = ("  " + card).getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer heap = ByteBuffer.wrap(bytes).position(2).slice();
+        ByteBuffer direct = ByteBuffer.allocateDirect(card.length())
+                .put(card.getBytes(StandardCharsets.US_ASCII)).flip();
+
+        // Act & Assert
+        assertEquals(expected, validator.isValid(new StringBuilder(card)), "CharSequence");
+        assertEquals(expected, validator.isValid(chars, 2, card.length()), "char[]");
+        assertEquals(expected, validator.isValid(bytes, 2, card.length()), "byte[]");
+        assertEquals(expected, validator.isValid(heap), "heap ByteBuffer with an array offset");
+        assertEquals(expected, validator.isValid(direct), "direct ByteBuffer");
+        assertEquals(0, direct.position(), "Expected ByteBuffer position unchanged");
+    }
+
+    @Test
+    void validate_unknownPrefixAndBadChecksum_reportsBothErrors() {
+        // Act
+        ValidationResult result = validator.validate("1234567890123456");
+
+        // Assert
+        assertFalse(result.isValid());
+        assertEquals(List.of("Invalid card number format", "Invalid card number checksum"), result.getErrors());
+    }
+}
@@ -0,0 +1,113 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating asynchronous payment processing with a fake storage service.
+ *
+ * Key Points:
+ * 1. CardPaymentService.processPaymentAsync returns a CompletableFuture instead of blocking on storage
+ * 2. The caller chooses the executor - a custom pool, or on Java 21+
+ *    Executors.newVirtualThreadPerTaskExecutor()
+ * 3. S3StorageService.storeReceiptAsync defaults to running the blocking call on that executor
+ * 4. FakeS3StorageService completes immediately, so tests stay fast and deterministic
+ */
+
+// ============================================================================
+// TESTS USING ASYNC PROCESSING
+// ============================================================================
+
+class AsyncPaymentProcessingTest {
+    private FakeS3StorageService fakeS3;
+    private CardPaymentService service;
+    private ExecutorService storageExecutor;
+
+    @BeforeEach
+    void setUp() {
+        fakeS3 = new FakeS3StorageService();
+        service = CardPaymentService.builder(fakeS3).build();
+        storageExecutor = Executors.newSingleThreadExecutor(task -> new Thread(task, "receipt-storage"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        storageExecutor.shutdown();
+        storageExecutor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void processPaymentAsync_validCard_completesWithTransactionIdAndStoresReceipt() {
+        // Act
+        String transactionId = service.processPaymentAsync("4532123456789010", 99.99, storageExecutor).join();
+
+        // Assert
+        assertNotNull(transactionId);
+        assertTrue(fakeS3.getReceipt(transactionId).contains("$99.99"));
+    }
+
+    @Test
+    void processPaymentAsync_invalidCard_completesWithNullAndStoresNothing() {
+        // Act
+        String transactionId = service.processPaymentAsync("123", 50.00, storageExecutor).join();
+
+        // Assert
+        assertNull(transactionId);
+        assertEquals(0, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void processPaymentAsync_blockingStorage_runsStorageOnGivenExecutor() {
+        // Arrange
+        ThreadRecordingS3StorageService blockingS3 = new ThreadRecordingS3StorageService(true);
+        CardPaymentService asyncService = CardPaymentService.builder(blockingS3).build();
+
+        // Act
+        String transactionId = asyncService.processPaymentAsync("4532123456789010", 10.00, storageExecutor).join();
+
+        // Assert
+        assertNotNull(transactionId);
+        assertEquals("receipt-storage", blockingS3.getStorageThreadName(),
+                "Expected blocking storeReceipt to run on the storage executor, not the caller thread");
+    }
+
+    @Test
+    void processPaymentAsync_storageFails_completesWithNull() {
+        // Arrange
+        CardPaymentService failingService =
+                CardPaymentService.builder(new ThreadRecordingS3StorageService(false)).build();
+
+        // Act
+        String transactionId = failingService.processPaymentAsync("4532123456789010", 10.00, storageExecutor).join();
+
+        // Assert
+        assertNull(transactionId);
+    }
+
+    // Blocking storage that only uses the interface's default storeReceiptAsync
+    static class ThreadRecordingS3StorageService implements S3StorageService {
+        private final boolean result;
+        private volatile String storageThreadName;
+
+        ThreadRecordingS3StorageService(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            storageThreadName = Thread.currentThread().getName();
+            return result;
+        }
+
+        String getStorageThreadName() {
+            return storageThreadName;
+        }
+    }
+}
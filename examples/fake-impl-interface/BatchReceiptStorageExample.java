@@ -0,0 +1,237 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating batched receipt storage for CardPaymentProcessor.
+ *
+ * Key Points:
+ * 1. S3StorageService.storeReceipts stores many receipts in one call
+ * 2. BatchingS3StorageService gathers receipts from concurrent payments into one write
+ * 3. Each payment still gets its own stored/not-stored result
+ * 4. The fake supports the batch API, so tests verify stored state as before
+ */
+
+// ============================================================================
+// BATCHING DECORATOR
+// ============================================================================
+
+/**
+ * Combines storeReceipt calls from concurrent threads into storeReceipts batches.
+ *
+ * Each caller queues its receipt and then takes the write lock. Whichever
+ * thread holds the lock writes everything queued so far (up to maxBatchSize
+ * per batch), so payments that arrive while a batch is in flight share the
+ * next one. A single caller with no contention writes a batch of one.
+ */
+class BatchingS3StorageService implements S3StorageService {
+    private final S3StorageService delegate;
+    private final int maxBatchSize;
+    private final Queue<PendingReceipt> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public BatchingS3StorageService(S3StorageService delegate, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1, was " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        PendingReceipt mine = new PendingReceipt(new Receipt(transactionId, receiptContent));
+        pending.add(mine);
+
+        writeLock.lock();
+        try {
+            // Another thread may already have written our receipt in its batch
+            while (!mine.done) {
+                writeBatch();
+            }
+            return mine.stored;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        return delegate.storeReceipts(receipts);
+    }
+
+    // Called with writeLock held; results are published to waiting threads by the lock
+    private void writeBatch() {
+        List<PendingReceipt> batch = new ArrayList<>(maxBatchSize);
+        List<Receipt> receipts = new ArrayList<>(maxBatchSize);
+        PendingReceipt next;
+        while (batch.size() < maxBatchSize && (next = pending.poll()) != null) {
+            batch.add(next);
+            receipts.add(next.receipt);
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Boolean> results = List.of();
+        try {
+            results = delegate.storeReceipts(receipts);
+        } catch (RuntimeException e) {
+            // Reported below as not stored
+        } finally {
+            // Also runs when the delegate throws an Error, which then propagates to this caller;
+            // every receipt in the batch is done, so no other caller waits on it forever
+            for (int i = 0; i < batch.size(); i++) {
+                PendingReceipt item = batch.get(i);
+                item.stored = i < results.size() && Boolean.TRUE.equals(results.get(i));
+                item.done = true;
+            }
+        }
+    }
+
+    private static final class PendingReceipt {
+        private final Receipt receipt;
+        private boolean stored;
+        private boolean done;
+
+        private PendingReceipt(Receipt receipt) {
+            this.receipt = receipt;
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING BATCH STORAGE
+// ============================================================================
+
+class BatchReceiptStorageTest {
+    private BatchCountingFakeS3StorageService fakeS3;
+
+    @BeforeEach
+    void setUp() {
+        fakeS3 = new BatchCountingFakeS3StorageService();
+    }
+
+    @Test
+    void storeReceipts_mixOfValidAndInvalidReceipts_returnsResultPerReceipt() {
+        // Arrange
+        List<Receipt> receipts = List.of(
+                new Receipt("TXN-1", "Receipt 1"),
+                new Receipt("TXN-2", null),
+                new Receipt("TXN-3", "Receipt 3"));
+
+        // Act
+        List<Boolean> results = fakeS3.storeReceipts(receipts);
+
+        // Assert
+        assertEquals(List.of(true, false, true), results);
+        assertEquals(2, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void storeReceipt_concurrentCallers_storesEveryReceipt() {
+        // Arrange
+        BatchingS3StorageService batching = new BatchingS3StorageService(fakeS3, 64);
+
+        // Act
+        long storedCount = IntStream.range(0, 2_000).parallel()
+                .filter(i -> batching.storeReceipt("TXN-" + i, "Receipt " + i))
+                .count();
+
+        // Assert
+        assertEquals(2_000, storedCount, "Expected every caller to see its receipt stored");
+        assertEquals(2_000, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void processPayment_withBatchedStorage_storesReceipt() {
+        // Arrange
+        CardPaymentProcessor processor = CardPaymentProcessor.withBatchedStorage(fakeS3, 64);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 99.99);
+
+        // Assert
+        assertNotNull(transactionId);
+        assertTrue(fakeS3.getReceipt(transactionId).contains("$99.99"));
+        assertEquals(1, fakeS3.getBatchWriteCount());
+    }
+
+    @Test
+    void storeReceipt_delegateThrows_returnsFalse() {
+        // Arrange
+        BatchingS3StorageService batching = new BatchingS3StorageService(new FakeS3StorageService() {
+            @Override
+            public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+                throw new IllegalStateException("store unavailable");
+            }
+        }, 64);
+
+        // Act
+        boolean stored = batching.storeReceipt("TXN-1", "Receipt 1");
+
+        // Assert
+        assertFalse(stored, "Expected a failed batch to report the receipt as not stored");
+    }
+
+    @Test
+    void storeReceipt_delegateThrowsError_rethrowsAndKeepsStoring() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        BatchingS3StorageService batching = new BatchingS3StorageService(new FakeS3StorageService() {
+            @Override
+            public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new AssertionError("store crashed");
+                }
+                return super.storeReceipts(receipts);
+            }
+        }, 64);
+
+        // Act
+        assertThrows(AssertionError.class, () -> batching.storeReceipt("TXN-1", "Receipt 1"));
+        boolean stored = batching.storeReceipt("TXN-2", "Receipt 2");
+
+        // Assert
+        assertTrue(stored, "Expected the failed batch to be finished, so later receipts are written");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void constructor_zeroBatchSize_throwsIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchingS3StorageService(fakeS3, 0));
+    }
+
+    // Thread-safe fake that also counts batch writes, for verifying batching behavior
+    static class BatchCountingFakeS3StorageService extends ConcurrentFakeS3StorageService {
+        private final AtomicInteger batchWrites = new AtomicInteger();
+
+        @Override
+        public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+            batchWrites.incrementAndGet();
+            return super.storeReceipts(receipts);
+        }
+
+        int getBatchWriteCount() {
+            return batchWrites.get();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a capacity-bounded fake for long soak runs.
+ *
+ * Key Points:
+ * 1. Receipt count and stored bytes are capped, so the heap stays flat over long runs
+ * 2. EvictionPolicy chooses what goes when the cap is hit: oldest, least recently read, or expired
+ * 3. Eviction and expiry counters let tests assert exactly what was dropped
+ * 4. A clock is injected, so TTL tests don't sleep
+ */
+
+// ============================================================================
+// BOUNDED FAKE IMPLEMENTATION
+// ============================================================================
+
+/**
+ * Which receipts a BoundedFakeS3StorageService evicts.
+ */
+enum EvictionPolicy {
+    /** Evict the receipt stored longest ago */
+    FIFO,
+    /** Evict the receipt read or stored longest ago */
+    LRU,
+    /** Expire receipts older than the TTL; evict the oldest if still over capacity */
+    TTL
+}
+
+/**
+ * Fake S3 implementation that holds at most maxReceipts receipts and maxBytes bytes.
+ *
+ * Stored bytes count the UTF-16 characters of transaction IDs and receipt
+ * contents (2 bytes each), not JVM object overhead. All methods are
+ * synchronized, so counts seen by tests are always exact.
+ */
+class BoundedFakeS3StorageService implements S3StorageService {
+    private final Map<String, StoredReceipt> storage;
+    private final EvictionPolicy policy;
+    private final int maxReceipts;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private long storedBytes;
+    private long evictionCount;
+    private long expiredCount;
+
+    public BoundedFakeS3StorageService(EvictionPolicy policy, int maxReceipts, long maxBytes) {
+        this(policy, maxReceipts, maxBytes, Duration.ZERO, System::nanoTime);
+    }
+
+    public BoundedFakeS3StorageService(EvictionPolicy policy, int maxReceipts, long maxBytes,
+                                       Duration ttl, LongSupplier nanoClock) {
+        if (maxReceipts < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxReceipts and maxBytes must be at least 1, were "
+                    + maxReceipts + " and " + maxBytes);
+        }
+        if (policy == EvictionPolicy.TTL && (ttl.isZero() || ttl.isNegative())) {
+            throw new IllegalArgumentException("TTL policy needs a positive ttl, was " + ttl);
+        }
+        this.storage = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+        this.policy = policy;
+        this.maxReceipts = maxReceipts;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public synchronized boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        long bytes = sizeOf(transactionId, receiptContent);
+        if (bytes > maxBytes) {
+            return false;
+        }
+        // Remove first so a rewritten receipt moves to the newest position in every policy
+        StoredReceipt previous = storage.remove(transactionId);
+        if (previous != null) {
+            storedBytes -= previous.bytes;
+        }
+        expireOldReceipts();
+        while (!storage.isEmpty() && (storage.size() >= maxReceipts || storedBytes + bytes > maxBytes)) {
+            removeEldest();
+            evictionCount++;
+        }
+        storage.put(transactionId, new StoredReceipt(receiptContent, bytes, nanoClock.getAsLong()));
+        storedBytes += bytes;
+        return true;
+    }
+
+    // Helper method for test verification; counts as a use under LRU
+    public synchronized String getReceipt(String transactionId) {
+        expireOldReceipts();
+        StoredReceipt stored = storage.get(transactionId);
+        return stored == null ? null : stored.content;
+    }
+
+    public synchronized int getReceiptCount() {
+        expireOldReceipts();
+        return storage.size();
+    }
+
+    public synchronized long getStoredBytes() {
+        expireOldReceipts();
+        return storedBytes;
+    }
+
+    // Receipts removed to stay under maxReceipts or maxBytes
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    // Receipts removed because their TTL passed
+    public synchronized long getExpiredCount() {
+        expireOldReceipts();
+        return expiredCount;
+    }
+
+    // TTL receipts are kept in store order, so expired ones are always at the head
+    private void expireOldReceipts() {
+        if (policy != EvictionPolicy.TTL) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        Iterator<StoredReceipt> oldestFirst = storage.values().iterator();
+        while (oldestFirst.hasNext()) {
+            StoredReceipt oldest = oldestFirst.next();
+            if (now - oldest.storedAtNanos < ttlNanos) {
+                return;
+            }
+            oldestFirst.remove();
+            storedBytes -= oldest.bytes;
+            expiredCount++;
+        }
+    }
+
+    private void removeEldest() {
+        Iterator<StoredReceipt> eldest = storage.values().iterator();
+        storedBytes -= eldest.next().bytes;
+        eldest.remove();
+    }
+
+    private static long sizeOf(String transactionId, String receiptContent) {
+        return 2L * (transactionId.length() + receiptContent.length());
+    }
+
+    private static final class StoredReceipt {
+        private final String content;
+        private final long bytes;
+        private final long storedAtNanos;
+
+        private StoredReceipt(String content, long bytes, long storedAtNanos) {
+            this.content = content;
+            this.bytes = bytes;
+            this.storedAtNanos = storedAtNanos;
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING BOUNDED FAKE IMPLEMENTATION
+// ============================================================================
+
+class BoundedFakeS3StorageServiceTest {
+    private static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+
+    @Test
+    void storeReceipt_fifoAtCapacity_evictsOldestReceipt() {
+        // Arrange
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(EvictionPolicy.FIFO, 2, UNLIMITED_BYTES);
+        fakeS3.storeReceipt("TXN-1", "first");
+        fakeS3.storeReceipt("TXN-2", "second");
+
+        // Act
+        fakeS3.storeReceipt("TXN-3", "third");
+
+        // Assert
+        assertNull(fakeS3.getReceipt("TXN-1"), "Expected oldest receipt TXN-1 to be evicted");
+        assertEquals(2, fakeS3.getReceiptCount());
+        assertEquals(1, fakeS3.getEvictionCount());
+    }
+
+    @Test
+    void storeReceipt_lruAtCapacity_evictsLeastRecentlyReadReceipt() {
+        // Arrange
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(EvictionPolicy.LRU, 2, UNLIMITED_BYTES);
+        fakeS3.storeReceipt("TXN-1", "first");
+        fakeS3.storeReceipt("TXN-2", "second");
+        fakeS3.getReceipt("TXN-1");
+
+        // Act
+        fakeS3.storeReceipt("TXN-3", "third");
+
+        // Assert
+        assertEquals("first", fakeS3.getReceipt("TXN-1"), "Expected recently read TXN-1 to be kept");
+        assertNull(fakeS3.getReceipt("TXN-2"), "Expected least recently used TXN-2 to be evicted");
+    }
+
+    @Test
+    void getReceipt_ttlPassed_returnsNullAndCountsExpiry() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(
+                EvictionPolicy.TTL, 100, UNLIMITED_BYTES, Duration.ofMinutes(5), clock::get);
+        fakeS3.storeReceipt("TXN-1", "receipt");
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        // Act
+        String receipt = fakeS3.getReceipt("TXN-1");
+
+        // Assert
+        assertNull(receipt);
+        assertEquals(1, fakeS3.getExpiredCount());
+        assertEquals(0, fakeS3.getStoredBytes());
+    }
+
+    @Test
+    void storeReceipt_overByteLimit_evictsUntilReceiptFits() {
+        // Arrange - each receipt is 10 UTF-16 chars, so 20 bytes
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(EvictionPolicy.FIFO, 100, 40);
+        fakeS3.storeReceipt("TXN-1", "aaaaa");
+        fakeS3.storeReceipt("TXN-2", "bbbbb");
+
+        // Act
+        fakeS3.storeReceipt("TXN-3", "ccccc");
+
+        // Assert
+        assertEquals(40, fakeS3.getStoredBytes());
+        assertEquals(1, fakeS3.getEvictionCount());
+        assertNull(fakeS3.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_receiptLargerThanByteLimit_returnsFalse() {
+        // Arrange
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(EvictionPolicy.FIFO, 100, 10);
+
+        // Act
+        boolean stored = fakeS3.storeReceipt("TXN-1", "too large for ten bytes");
+
+        // Assert
+        assertFalse(stored);
+        assertEquals(0, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void storeReceipt_sameTransactionIdAgain_replacesBytesWithoutEvicting() {
+        // Arrange
+        BoundedFakeS3StorageService fakeS3 = new BoundedFakeS3StorageService(EvictionPolicy.FIFO, 1, UNLIMITED_BYTES);
+        fakeS3.storeReceipt("TXN-1", "first");
+
+        // Act
+        fakeS3.storeReceipt("TXN-1", "second receipt");
+
+        // Assert
+        assertEquals("second receipt", fakeS3.getReceipt("TXN-1"));
+        assertEquals(0, fakeS3.getEvictionCount());
+        assertEquals(2L * ("TXN-1".length() + "second receipt".length()), fakeS3.getStoredBytes());
+    }
+}
@@ -0,0 +1,214 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating parallel bulk payment processing with CardPaymentService.processPayments.
+ *
+ * Key Points:
+ * 1. Payments are split into chunks that run in parallel on a ForkJoinPool
+ * 2. Each chunk stores its receipts with one storeReceipts call, so the store must be thread-safe
+ * 3. Results keep the order of the requests, so result i belongs to payment i
+ * 4. BulkPaymentResult reports counts, elapsed time and throughput
+ */
+
+// ============================================================================
+// BULK PAYMENT TYPES
+// ============================================================================
+
+/**
+ * One payment to process, used by the bulk and reactive payment APIs.
+ */
+final class PaymentRequest {
+    private final String cardNumber;
+    private final double amount;
+
+    public PaymentRequest(String cardNumber, double amount) {
+        this.cardNumber = cardNumber;
+        this.amount = amount;
+    }
+
+    public String getCardNumber() { return cardNumber; }
+    public double getAmount() { return amount; }
+}
+
+/**
+ * Outcome of CardPaymentService.processPayments.
+ */
+final class BulkPaymentResult {
+    private final List<String> transactionIds;
+    private final int succeededCount;
+    private final int storageBatchCount;
+    private final long elapsedNanos;
+
+    BulkPaymentResult(List<String> transactionIds, int storageBatchCount, long elapsedNanos) {
+        int succeeded = 0;
+        for (String transactionId : transactionIds) {
+            if (transactionId != null) {
+                succeeded++;
+            }
+        }
+        this.transactionIds = Collections.unmodifiableList(transactionIds);
+        this.succeededCount = succeeded;
+        this.storageBatchCount = storageBatchCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return one entry per request, in request order; null where the payment failed
+     */
+    public List<String> getTransactionIds() { return transactionIds; }
+    public int getSucceededCount() { return succeededCount; }
+    public int getFailedCount() { return transactionIds.size() - succeededCount; }
+    // Number of storeReceipts calls made; chunks without a valid payment make none
+    public int getStorageBatchCount() { return storageBatchCount; }
+    public Duration getElapsed() { return Duration.ofNanos(elapsedNanos); }
+
+    public double getPaymentsPerSecond() {
+        return elapsedNanos == 0 ? 0 : transactionIds.size() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("payments=%d succeeded=%d failed=%d batches=%d elapsed=%dms throughput=%.0f/s",
+                transactionIds.size(), succeededCount, getFailedCount(), storageBatchCount,
+                getElapsed().toMillis(), getPaymentsPerSecond());
+    }
+}
+
+// ============================================================================
+// TESTS FOR BULK PAYMENTS
+// ============================================================================
+
+class BulkPaymentProcessingTest {
+    private static final String VALID_CARD = "4532123456789010";
+
+    @Test
+    void processPayments_mixOfValidAndInvalidPayments_keepsRequestOrder() {
+        // Arrange
+        ConcurrentFakeS3StorageService fakeS3 = new ConcurrentFakeS3StorageService();
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+        List<PaymentRequest> payments = List.of(
+                new PaymentRequest(VALID_CARD, 10.00),
+                new PaymentRequest("123", 20.00),
+                new PaymentRequest(VALID_CARD, 30.00));
+
+        // Act
+        BulkPaymentResult result = service.processPayments(payments);
+
+        // Assert
+        List<String> transactionIds = result.getTransactionIds();
+        assertTrue(fakeS3.getReceipt(transactionIds.get(0)).contains("$10.00"));
+        assertNull(transactionIds.get(1), "Expected invalid card to have no transaction");
+        assertTrue(fakeS3.getReceipt(transactionIds.get(2)).contains("$30.00"));
+        assertEquals(2, result.getSucceededCount());
+        assertEquals(1, result.getFailedCount());
+    }
+
+    @Test
+    void processPayments_manyPayments_storesOneBatchPerChunk() {
+        // Arrange
+        BatchReceiptStorageTest.BatchCountingFakeS3StorageService fakeS3 =
+                new BatchReceiptStorageTest.BatchCountingFakeS3StorageService();
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+        List<PaymentRequest> payments = IntStream.range(0, 1_000)
+                .mapToObj(i -> new PaymentRequest(VALID_CARD, 1 + i))
+                .collect(Collectors.toList());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            // Act
+            BulkPaymentResult result = service.processPayments(payments, 100, pool);
+
+            // Assert
+            assertEquals(1_000, result.getSucceededCount());
+            assertEquals(10, result.getStorageBatchCount());
+            assertEquals(10, fakeS3.getBatchWriteCount());
+            assertEquals(1_000, fakeS3.getReceiptCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void processPayments_stream_returnsResultPerPayment() {
+        // Arrange
+        CardPaymentService service = CardPaymentService.builder(new ConcurrentFakeS3StorageService()).build();
+
+        // Act
+        BulkPaymentResult result = service.processPayments(
+                Stream.generate(() -> new PaymentRequest(VALID_CARD, 5.00)).limit(500));
+
+        // Assert
+        assertEquals(500, result.getTransactionIds().size());
+        assertEquals(500, result.getTransactionIds().stream().distinct().count(),
+                "Expected a distinct transaction ID per payment");
+    }
+
+    @Test
+    void processPayments_noValidPayments_makesNoStorageCalls() {
+        // Arrange
+        BatchReceiptStorageTest.BatchCountingFakeS3StorageService fakeS3 =
+                new BatchReceiptStorageTest.BatchCountingFakeS3StorageService();
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+
+        // Act
+        BulkPaymentResult result = service.processPayments(List.of(
+                new PaymentRequest("123", 10.00), new PaymentRequest(VALID_CARD, -1.00)));
+
+        // Assert
+        assertEquals(2, result.getFailedCount());
+        assertEquals(0, result.getStorageBatchCount());
+        assertEquals(0, fakeS3.getBatchWriteCount());
+    }
+
+    @Test
+    void processPayments_storageReturnsTooFewResults_failsChunk() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService() {
+            @Override
+            public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+                return List.of(true);
+            }
+        };
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+
+        // Act
+        BulkPaymentResult result = service.processPayments(List.of(
+                new PaymentRequest(VALID_CARD, 10.00), new PaymentRequest(VALID_CARD, 20.00)));
+
+        // Assert
+        assertEquals(2, result.getFailedCount(), "Expected unmatched results to fail every payment in the chunk");
+        assertEquals(1, result.getStorageBatchCount());
+    }
+
+    @Test
+    void processPayments_storageRejectsBatch_reportsFailures() {
+        // Arrange
+        CardPaymentService service = CardPaymentService.builder(new FakeS3StorageService() {
+            @Override
+            public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+                throw new IllegalStateException("store unavailable");
+            }
+        }).build();
+
+        // Act
+        BulkPaymentResult result = service.processPayments(List.of(new PaymentRequest(VALID_CARD, 10.00)));
+
+        // Assert
+        assertEquals(1, result.getFailedCount());
+        assertNull(result.getTransactionIds().get(0));
+    }
+}
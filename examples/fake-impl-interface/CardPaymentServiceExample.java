@@ -0,0 +1,299 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a full-featured payment service built on the same S3StorageService.
+ *
+ * Key Points:
+ * 1. CardPaymentService processes payments like CardPaymentProcessor, plus metrics and idempotency keys
+ * 2. It adds async, bulk and reactive entry points for high-volume callers
+ * 3. Optional collaborators are set on a Builder, so the plain processor stays a minimal example
+ * 4. Tests use the same fakes as CardPaymentProcessor and verify stored state
+ */
+
+// ============================================================================
+// PAYMENT SERVICE
+// ============================================================================
+
+/**
+ * Processes card payments the way CardPaymentProcessor does, with optional
+ * metrics and idempotency keys, and async, bulk and reactive entry points.
+ * Build instances with builder(s3Service).
+ *
+ * processPayments stores its chunks from several pool threads at once, and the
+ * async and reactive entry points store on the given executor, so with those
+ * the store must be thread-safe, e.g. ConcurrentFakeS3StorageService rather
+ * than FakeS3StorageService, whose HashMap can lose or corrupt receipts.
+ */
+class CardPaymentService {
+    private static final int DEFAULT_BULK_CHUNK_SIZE = 256;
+
+    private final S3StorageService s3Service;
+    private final TransactionIdGenerator idGenerator;
+    private final PaymentMetrics metrics;
+    private final IdempotencyCache idempotencyCache;
+    private final boolean storeBytes;
+
+    private CardPaymentService(Builder builder) {
+        this.s3Service = builder.metrics.isEnabled()
+                ? new MeteredS3StorageService(builder.s3Service, builder.metrics.receiptStorage())
+                : builder.s3Service;
+        this.idGenerator = builder.idGenerator;
+        this.metrics = builder.metrics;
+        this.idempotencyCache = builder.idempotencyCache;
+        this.storeBytes = s3Service.acceptsBytes();
+    }
+
+    public static Builder builder(S3StorageService s3Service) {
+        return new Builder(s3Service);
+    }
+
+    public String processPayment(String cardNumber, double amount) {
+        if (storeBytes) {
+            // Encoded once into a reusable per-thread buffer; storage consumes it before returning
+            PreparedPayment<ByteBuffer> payment = prepare(cardNumber, amount, ReceiptEncoder::encode);
+            return payment != null && s3Service.storeReceipt(payment.transactionId, payment.receipt)
+                    ? payment.transactionId : null;
+        }
+        // Stores without byte support would decode the bytes back into a String
+        PreparedPayment<String> payment = prepare(cardNumber, amount, ReceiptEncoder::render);
+        return payment != null && s3Service.storeReceipt(payment.transactionId, payment.receipt)
+                ? payment.transactionId : null;
+    }
+
+    /**
+     * Processes a payment at most once per idempotency key.
+     * A repeat of a successful key returns the original transaction ID without charging
+     * again; a repeat while the first is in flight waits for it. A null key never matches.
+     * @throws IllegalArgumentException if the key was used for a different card or amount
+     * @throws IllegalStateException if the service was built without an IdempotencyCache
+     */
+    public String processPayment(String idempotencyKey, String cardNumber, double amount) {
+        if (idempotencyKey == null) {
+            return processPayment(cardNumber, amount);
+        }
+        if (idempotencyCache == null) {
+            throw new IllegalStateException(
+                    "Idempotency keys need an IdempotencyCache, set with Builder.idempotencyCache");
+        }
+        return idempotencyCache.computeIfAbsent(idempotencyKey, IdempotencyCache.fingerprint(cardNumber, amount),
+                () -> processPayment(cardNumber, amount));
+    }
+
+    // Same result as processPayment, but the calling thread never waits on storage
+    public CompletableFuture<String> processPaymentAsync(String cardNumber, double amount, Executor executor) {
+        PreparedPayment<String> payment = prepare(cardNumber, amount, ReceiptEncoder::render);
+        if (payment == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String transactionId = payment.transactionId;
+        return s3Service.storeReceiptAsync(transactionId, payment.receipt, executor)
+                .thenApply(stored -> Boolean.TRUE.equals(stored) ? transactionId : null);
+    }
+
+    /**
+     * Processes many payments in parallel on the common ForkJoinPool; the store must be thread-safe.
+     * @return one transaction ID per payment, in request order, with throughput statistics
+     */
+    public BulkPaymentResult processPayments(List<PaymentRequest> payments) {
+        return processPayments(payments, DEFAULT_BULK_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    // Collects the stream first: results are returned in one ordered list anyway
+    public BulkPaymentResult processPayments(Stream<PaymentRequest> payments) {
+        return processPayments(payments.collect(Collectors.toList()));
+    }
+
+    /**
+     * Splits payments into chunks of chunkSize that run in parallel on the pool.
+     * Each chunk validates and renders its payments, then stores their receipts
+     * with one storeReceipts call. If that call throws, or returns a different
+     * number of results than receipts, the chunk's payments fail. Chunks call
+     * storeReceipts concurrently, so the store must be thread-safe.
+     */
+    public BulkPaymentResult processPayments(List<PaymentRequest> payments, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, was " + chunkSize);
+        }
+        long start = System.nanoTime();
+        String[] transactionIds = new String[payments.size()];
+        AtomicInteger storageBatches = new AtomicInteger();
+        List<ForkJoinTask<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < payments.size(); from += chunkSize) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(from + chunkSize, payments.size());
+            chunks.add(pool.submit(() -> processChunk(payments, chunkStart, chunkEnd, transactionIds, storageBatches)));
+        }
+        for (ForkJoinTask<?> chunk : chunks) {
+            chunk.join();
+        }
+        return new BulkPaymentResult(Arrays.asList(transactionIds), storageBatches.get(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Exposes this service as a Flow.Processor of payment requests to results,
+     * with upstream demand limited to maxInFlight payments waiting on storage.
+     */
+    public PaymentFlowProcessor asFlowProcessor(int maxInFlight, Executor storageExecutor) {
+        return new PaymentFlowProcessor(this, maxInFlight, storageExecutor);
+    }
+
+    // Writes each payment's transaction ID, or leaves null, at its index in transactionIds
+    private void processChunk(List<PaymentRequest> payments, int from, int to, String[] transactionIds,
+                              AtomicInteger storageBatches) {
+        List<Receipt> receipts = new ArrayList<>(to - from);
+        int[] indexes = new int[to - from];
+        for (int i = from; i < to; i++) {
+            PaymentRequest request = payments.get(i);
+            PreparedPayment<String> payment = prepare(request.getCardNumber(), request.getAmount(),
+                    ReceiptEncoder::render);
+            if (payment != null) {
+                indexes[receipts.size()] = i;
+                receipts.add(new Receipt(payment.transactionId, payment.receipt));
+            }
+        }
+        if (receipts.isEmpty()) {
+            return;
+        }
+
+        storageBatches.incrementAndGet();
+        List<Boolean> stored;
+        try {
+            stored = s3Service.storeReceipts(receipts);
+        } catch (RuntimeException e) {
+            return;
+        }
+        // Results cannot be matched to receipts if storage broke the one-result-per-receipt contract
+        if (stored == null || stored.size() != receipts.size()) {
+            return;
+        }
+        for (int r = 0; r < receipts.size(); r++) {
+            if (Boolean.TRUE.equals(stored.get(r))) {
+                transactionIds[indexes[r]] = receipts.get(r).getTransactionId();
+            }
+        }
+    }
+
+    /**
+     * Validates a payment, then issues its transaction ID and renders its receipt,
+     * timing validation and receipt generation into the metrics.
+     * @return the transaction ID and receipt, or null if the card or amount is invalid
+     */
+    private <R> PreparedPayment<R> prepare(String cardNumber, double amount, ReceiptFormat<R> format) {
+        long start = metrics.cardValidation().start();
+        boolean valid = CardPaymentProcessor.isValidCard(cardNumber) && amount > 0;
+        start = metrics.cardValidation().record(start, valid);
+        if (!valid) {
+            return null;
+        }
+
+        String transactionId = idGenerator.nextId();
+        R receipt = format.render(ReceiptEncoder.forCurrentThread(), transactionId, cardNumber, amount);
+        metrics.receiptGeneration().record(start, true);
+        return new PreparedPayment<>(transactionId, receipt);
+    }
+
+    // ReceiptEncoder::render for a String, ReceiptEncoder::encode for the encoder's reusable buffer
+    @FunctionalInterface
+    private interface ReceiptFormat<R> {
+        R render(ReceiptEncoder encoder, String transactionId, String cardNumber, double amount);
+    }
+
+    private static final class PreparedPayment<R> {
+        private final String transactionId;
+        private final R receipt;
+
+        private PreparedPayment(String transactionId, R receipt) {
+            this.transactionId = transactionId;
+            this.receipt = receipt;
+        }
+    }
+
+    /**
+     * Optional collaborators for CardPaymentService; anything not set keeps its default.
+     */
+    static final class Builder {
+        private final S3StorageService s3Service;
+        private TransactionIdGenerator idGenerator = CardPaymentProcessor.DEFAULT_ID_GENERATOR;
+        private PaymentMetrics metrics = PaymentMetrics.DISABLED;
+        private IdempotencyCache idempotencyCache;
+
+        private Builder(S3StorageService s3Service) {
+            this.s3Service = s3Service;
+        }
+
+        public Builder idGenerator(TransactionIdGenerator idGenerator) {
+            this.idGenerator = idGenerator;
+            return this;
+        }
+
+        // Records validation, receipt generation and storage latency into the given metrics
+        public Builder metrics(PaymentMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        // Required for processPayment with an idempotency key; none by default, so nothing is allocated unused
+        public Builder idempotencyCache(IdempotencyCache idempotencyCache) {
+            this.idempotencyCache = idempotencyCache;
+            return this;
+        }
+
+        public CardPaymentService build() {
+            return new CardPaymentService(this);
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING THE PAYMENT SERVICE
+// ============================================================================
+
+class CardPaymentServiceTest {
+    private static final String VALID_CARD = "4532123456789010";
+
+    @Test
+    void processPayment_defaultBuilder_storesReceiptLikeCardPaymentProcessor() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+
+        // Act
+        String transactionId = service.processPayment(VALID_CARD, 99.99);
+
+        // Assert
+        assertNotNull(transactionId);
+        assertEquals("Transaction: " + transactionId + "\nCard: ****-9010\nAmount: $99.99",
+                fakeS3.getReceipt(transactionId));
+    }
+
+    @Test
+    void processPayment_invalidCard_storesNothing() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        CardPaymentService service = CardPaymentService.builder(fakeS3).build();
+
+        // Act
+        String transactionId = service.processPayment("123", 50.00);
+
+        // Assert
+        assertNull(transactionId);
+        assertEquals(0, fakeS3.getReceiptCount());
+    }
+}
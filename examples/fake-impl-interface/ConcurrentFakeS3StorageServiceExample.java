@@ -0,0 +1,134 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a thread-safe fake implementation that one instance
+ * can share across parallel test execution and multi-threaded load runs.
+ *
+ * Key Points:
+ * 1. Same S3StorageService interface as FakeS3StorageService - production code is unchanged
+ * 2. ConcurrentHashMap gives lock-free reads and per-bin locking for writes
+ * 3. Receipt count comes from the map's striped counter, not a single shared lock
+ * 4. The consistency model is documented so tests know what they can assert
+ */
+
+// ============================================================================
+// THREAD-SAFE FAKE IMPLEMENTATION
+// ============================================================================
+
+/**
+ * Thread-safe fake S3 implementation for parallel tests and load harnesses.
+ *
+ * Consistency model:
+ * - storeReceipt/getReceipt are linearizable per transaction ID: once
+ *   storeReceipt returns, every thread's getReceipt sees that receipt (or a later one)
+ * - Storing the same transaction ID twice keeps the last write, like FakeS3StorageService
+ * - getReceiptCount is exact whenever no stores are in flight; while stores
+ *   are running it returns a value between the counts before and after them
+ */
+class ConcurrentFakeS3StorageService implements S3StorageService {
+    private final ConcurrentHashMap<String, String> storage;
+
+    public ConcurrentFakeS3StorageService() {
+        this.storage = new ConcurrentHashMap<>();
+    }
+
+    // Pre-size for load runs so millions of stores don't pay for repeated resizing
+    public ConcurrentFakeS3StorageService(int expectedReceipts) {
+        this.storage = new ConcurrentHashMap<>(expectedReceipts);
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        storage.put(transactionId, receiptContent);
+        return true;
+    }
+
+    // Helper method for test verification
+    public String getReceipt(String transactionId) {
+        return storage.get(transactionId);
+    }
+
+    public int getReceiptCount() {
+        return (int) Math.min(storage.mappingCount(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Streams stored receipts without copying the map. Safe to use while
+     * stores are running: each receipt is seen at most once, and receipts
+     * stored during the stream may or may not be included.
+     */
+    public Stream<Receipt> receipts() {
+        return storage.entrySet().stream().map(entry -> new Receipt(entry.getKey(), entry.getValue()));
+    }
+}
+
+// ============================================================================
+// TESTS USING THREAD-SAFE FAKE IMPLEMENTATION
+// ============================================================================
+
+class ConcurrentFakeS3StorageServiceTest {
+    private ConcurrentFakeS3StorageService fakeS3;
+
+    @BeforeEach
+    void setUp() {
+        fakeS3 = new ConcurrentFakeS3StorageService();
+    }
+
+    @Test
+    void storeReceipt_concurrentStoresFromManyThreads_countsEveryReceipt() {
+        // Act
+        IntStream.range(0, 10_000).parallel()
+                .forEach(i -> fakeS3.storeReceipt("TXN-" + i, "Receipt " + i));
+
+        // Assert
+        assertEquals(10_000, fakeS3.getReceiptCount(),
+                "Expected every concurrently stored receipt to be counted");
+        assertEquals("Receipt 9999", fakeS3.getReceipt("TXN-9999"));
+    }
+
+    @Test
+    void storeReceipt_sameTransactionIdTwice_keepsLastReceiptAndCountsOnce() {
+        // Act
+        fakeS3.storeReceipt("TXN-1", "first");
+        fakeS3.storeReceipt("TXN-1", "second");
+
+        // Assert
+        assertEquals(1, fakeS3.getReceiptCount());
+        assertEquals("second", fakeS3.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_nullContent_returnsFalseAndStoresNothing() {
+        // Act
+        boolean stored = fakeS3.storeReceipt("TXN-1", (String) null);
+
+        // Assert
+        assertFalse(stored);
+        assertEquals(0, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void processPayment_withConcurrentFake_storesReceipt() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(fakeS3);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 42.00);
+
+        // Assert
+        assertNotNull(transactionId);
+        assertTrue(fakeS3.getReceipt(transactionId).contains("$42.00"));
+    }
+}
@@ -0,0 +1,350 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a content-addressed S3StorageService that stores each distinct receipt body once.
+ *
+ * Key Points:
+ * 1. Receipt bodies are keyed by their SHA-256 hash
+ * 2. Transaction IDs map to content keys; identical bodies share one stored copy
+ * 3. Reference counts free a body when no transaction ID points at it any more
+ * 4. Retried writes of an existing body never decode or copy it again
+ * 5. A leading "Transaction: <id>" line is stripped before hashing and rebuilt on read, so
+ *    CardPaymentProcessor receipts for the same card and amount share one body
+ */
+
+// ============================================================================
+// DEDUPLICATING IMPLEMENTATION
+// ============================================================================
+
+/**
+ * In-memory S3StorageService that deduplicates receipt bodies by content hash.
+ *
+ * All operations are lock-free at the map level (ConcurrentHashMap compute),
+ * so concurrent stores of the same body keep an exact reference count.
+ * Bodies are assumed distinct when their SHA-256 hashes differ and equal
+ * when they match; a collision is not expected in practice.
+ *
+ * Every receipt CardPaymentProcessor renders starts with its own transaction
+ * ID, which would make each body unique. When a body's first line is exactly
+ * "Transaction: " followed by the ID it is stored under, that line is dropped
+ * before hashing and put back by getReceipt, so only the ID-independent rest
+ * (card suffix and amount) is hashed and stored. Bodies with any other first
+ * line, including another transaction's ID, are stored whole.
+ */
+class DeduplicatingS3StorageService implements S3StorageService {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    });
+
+    private static final String TRANSACTION_LABEL = "Transaction: ";
+
+    private final ConcurrentHashMap<String, ReceiptRef> receipts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ContentKey, StoredContent> contents = new ConcurrentHashMap<>();
+    private final AtomicLong storedContentBytes = new AtomicLong();
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        int headerLength = idHeaderLength(transactionId, receiptContent);
+        String body = receiptContent.substring(headerLength);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = SHA_256.get();
+        digest.update(bytes);
+        ContentKey key = new ContentKey(digest.digest());
+        contents.compute(key, (k, existing) -> existing != null
+                ? existing.retain()
+                : newContent(body, bytes.length));
+        release(receipts.put(transactionId, new ReceiptRef(key, headerLength > 0)));
+        return true;
+    }
+
+    @Override
+    public boolean acceptsBytes() {
+        return true;
+    }
+
+    // Hashes the bytes first and only decodes them when the body has not been seen before
+    @Override
+    public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        ByteBuffer body = receiptContent.duplicate();
+        int headerLength = idHeaderLength(transactionId, body);
+        body.position(body.position() + headerLength);
+        int length = body.remaining();
+        MessageDigest digest = SHA_256.get();
+        digest.update(body.duplicate());
+        ContentKey key = new ContentKey(digest.digest());
+        contents.compute(key, (k, existing) -> existing != null
+                ? existing.retain()
+                : newContent(StandardCharsets.UTF_8.decode(body).toString(), length));
+        receiptContent.position(receiptContent.limit());
+        release(receipts.put(transactionId, new ReceiptRef(key, headerLength > 0)));
+        return true;
+    }
+
+    public String getReceipt(String transactionId) {
+        while (true) {
+            ReceiptRef ref = receipts.get(transactionId);
+            if (ref == null) {
+                return null;
+            }
+            StoredContent content = contents.get(ref.key);
+            if (content != null) {
+                return ref.hasIdHeader ? TRANSACTION_LABEL + transactionId + "\n" + content.content : content.content;
+            }
+            // The ID was rewritten between the two lookups and its old body freed; read it again
+            if (ref == receipts.get(transactionId)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes a receipt, freeing its body if no other transaction ID shares it.
+     * @return true if the transaction ID was stored
+     */
+    public boolean removeReceipt(String transactionId) {
+        ReceiptRef ref = receipts.remove(transactionId);
+        release(ref);
+        return ref != null;
+    }
+
+    public int getReceiptCount() {
+        return receipts.size();
+    }
+
+    public int getDistinctContentCount() {
+        return contents.size();
+    }
+
+    // UTF-8 bytes of distinct bodies only; what the store would hold on disk
+    public long getStoredContentBytes() {
+        return storedContentBytes.get();
+    }
+
+    private StoredContent newContent(String content, int byteLength) {
+        storedContentBytes.addAndGet(byteLength);
+        return new StoredContent(content, byteLength);
+    }
+
+    // Length of a leading "Transaction: <transactionId>\n" line, or 0 if the body does not start with one
+    private static int idHeaderLength(String transactionId, String content) {
+        int idEnd = TRANSACTION_LABEL.length() + transactionId.length();
+        boolean hasHeader = content.length() > idEnd && content.startsWith(TRANSACTION_LABEL)
+                && content.startsWith(transactionId, TRANSACTION_LABEL.length()) && content.charAt(idEnd) == '\n';
+        return hasHeader ? idEnd + 1 : 0;
+    }
+
+    private static int idHeaderLength(String transactionId, ByteBuffer content) {
+        byte[] header = (TRANSACTION_LABEL + transactionId + "\n").getBytes(StandardCharsets.UTF_8);
+        if (content.remaining() < header.length) {
+            return 0;
+        }
+        ByteBuffer start = content.duplicate();
+        start.limit(start.position() + header.length);
+        return start.equals(ByteBuffer.wrap(header)) ? header.length : 0;
+    }
+
+    private void release(ReceiptRef ref) {
+        if (ref == null) {
+            return;
+        }
+        contents.computeIfPresent(ref.key, (k, existing) -> {
+            if (--existing.refCount > 0) {
+                return existing;
+            }
+            storedContentBytes.addAndGet(-existing.byteLength);
+            return null;
+        });
+    }
+
+    // A new ref per store, so getReceipt can tell a rewrite from the ref it read
+    private static final class ReceiptRef {
+        private final ContentKey key;
+        private final boolean hasIdHeader;
+
+        private ReceiptRef(ContentKey key, boolean hasIdHeader) {
+            this.key = key;
+            this.hasIdHeader = hasIdHeader;
+        }
+    }
+
+    private static final class ContentKey {
+        private final byte[] hash;
+        private final int hashCode;
+
+        private ContentKey(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ContentKey && Arrays.equals(hash, ((ContentKey) other).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    // refCount is only read and written inside ConcurrentHashMap.compute for its key
+    private static final class StoredContent {
+        private final String content;
+        private final int byteLength;
+        private int refCount = 1;
+
+        private StoredContent(String content, int byteLength) {
+            this.content = content;
+            this.byteLength = byteLength;
+        }
+
+        private StoredContent retain() {
+            refCount++;
+            return this;
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING DEDUPLICATING IMPLEMENTATION
+// ============================================================================
+
+class DeduplicatingS3StorageServiceTest {
+    private DeduplicatingS3StorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new DeduplicatingS3StorageService();
+    }
+
+    @Test
+    void storeReceipt_sameBodyForTwoTransactions_storesBodyOnce() {
+        // Act
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+        storage.storeReceipt("TXN-2", "Amount: $10.00");
+
+        // Assert
+        assertEquals(2, storage.getReceiptCount());
+        assertEquals(1, storage.getDistinctContentCount());
+        assertEquals("Amount: $10.00".length(), storage.getStoredContentBytes());
+        assertEquals("Amount: $10.00", storage.getReceipt("TXN-2"));
+    }
+
+    @Test
+    void storeReceipt_retryOfSameReceipt_keepsOneBody() {
+        // Act
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+
+        // Assert
+        assertEquals(1, storage.getReceiptCount());
+        assertEquals(1, storage.getDistinctContentCount());
+    }
+
+    @Test
+    void storeReceipt_transactionRewrittenWithNewBody_freesOldBody() {
+        // Arrange
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+
+        // Act
+        storage.storeReceipt("TXN-1", "Amount: $12.00");
+
+        // Assert
+        assertEquals("Amount: $12.00", storage.getReceipt("TXN-1"));
+        assertEquals(1, storage.getDistinctContentCount(), "Expected unreferenced old body to be freed");
+    }
+
+    @Test
+    void removeReceipt_bodySharedWithAnotherTransaction_keepsBody() {
+        // Arrange
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+        storage.storeReceipt("TXN-2", "Amount: $10.00");
+
+        // Act
+        storage.removeReceipt("TXN-1");
+
+        // Assert
+        assertNull(storage.getReceipt("TXN-1"));
+        assertEquals("Amount: $10.00", storage.getReceipt("TXN-2"));
+        assertEquals(1, storage.getDistinctContentCount());
+    }
+
+    @Test
+    void storeReceipt_byteBufferWithKnownBody_sharesStoredBody() {
+        // Arrange
+        storage.storeReceipt("TXN-1", "Amount: $10.00");
+        ByteBuffer retry = ByteBuffer.wrap("Amount: $10.00".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        storage.storeReceipt("TXN-2", retry);
+
+        // Assert
+        assertEquals(1, storage.getDistinctContentCount());
+        assertEquals(0, retry.remaining(), "Expected the buffer to be consumed");
+        assertEquals("Amount: $10.00", storage.getReceipt("TXN-2"));
+    }
+
+    @Test
+    void processPayment_withDeduplicatingStorage_storesReceipt() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(storage);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 10.00);
+
+        // Assert
+        assertTrue(storage.getReceipt(transactionId).contains("$10.00"));
+    }
+
+    @Test
+    void processPayment_sameCardAndAmountTwice_storesBodyOnceAndRebuildsEachId() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(storage);
+
+        // Act
+        String txn1 = processor.processPayment("4532123456789010", 10.00);
+        String txn2 = processor.processPayment("4532123456789010", 10.00);
+
+        // Assert
+        assertEquals(1, storage.getDistinctContentCount());
+        assertEquals("Card: ****-9010\nAmount: $10.00".length(), storage.getStoredContentBytes());
+        assertEquals("Transaction: " + txn1 + "\nCard: ****-9010\nAmount: $10.00", storage.getReceipt(txn1));
+        assertEquals("Transaction: " + txn2 + "\nCard: ****-9010\nAmount: $10.00", storage.getReceipt(txn2));
+    }
+
+    @Test
+    void storeReceipt_bodyHeadedWithAnotherTransactionId_storesItWhole() {
+        // Arrange
+        String body = "Transaction: TXN-2\nAmount: $10.00";
+
+        // Act
+        storage.storeReceipt("TXN-1", body);
+
+        // Assert
+        assertEquals(body, storage.getReceipt("TXN-1"));
+        assertEquals(body.length(), storage.getStoredContentBytes());
+    }
+}
@@ -3,8 +3,17 @@ package examples.fake_vs_mock_interface;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +45,76 @@ interface S3StorageService {
      * @return true if stored successfully
      */
     boolean storeReceipt(String transactionId, String receiptContent);
+
+    /**
+     * Stores receipt bytes in S3, consuming the buffer from its position to its limit.
+     * Implementations must not keep the buffer after returning, so callers can reuse it.
+     * The default decodes UTF-8 and calls storeReceipt(String, String); implementations
+     * that write bytes (files, sockets) should override it to skip the String, and
+     * override acceptsBytes to say so.
+     * @param transactionId Transaction identifier
+     * @param receiptContent UTF-8 receipt content, direct or heap
+     * @return true if stored successfully
+     */
+    default boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        String content = receiptContent == null ? null : StandardCharsets.UTF_8.decode(receiptContent).toString();
+        return storeReceipt(transactionId, content);
+    }
+
+    /**
+     * Whether storeReceipt(String, ByteBuffer) stores the bytes without decoding them to a String.
+     * Callers that can produce either form pass bytes only when this is true, since the
+     * default ByteBuffer overload costs a decode and a String on top of the encoding.
+     * @return false by default; decorators return their delegate's answer
+     */
+    default boolean acceptsBytes() {
+        return false;
+    }
+
+    /**
+     * Stores several receipts in one call.
+     * Implementations backed by a remote store should override this to
+     * pipeline the writes instead of paying one round trip per receipt.
+     * @param receipts Receipts to store
+     * @return one result per receipt, in iteration order; true if that receipt was stored
+     */
+    default List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        List<Boolean> results = new ArrayList<>(receipts.size());
+        for (Receipt receipt : receipts) {
+            results.add(storeReceipt(receipt.getTransactionId(), receipt.getContent()));
+        }
+        return results;
+    }
+
+    /**
+     * Stores receipt in S3 without blocking the caller.
+     * The default runs storeReceipt on the given executor; implementations with a
+     * non-blocking client should override this and ignore the executor.
+     * @param transactionId Transaction identifier
+     * @param receiptContent Receipt text content
+     * @param executor Executor for blocking work, e.g. a virtual-thread-per-task executor
+     * @return future completing with true if stored successfully
+     */
+    default CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                         Executor executor) {
+        return CompletableFuture.supplyAsync(() -> storeReceipt(transactionId, receiptContent), executor);
+    }
+}
+
+/**
+ * A receipt waiting to be stored, used by the batch storage API.
+ */
+final class Receipt {
+    private final String transactionId;
+    private final String content;
+
+    public Receipt(String transactionId, String content) {
+        this.transactionId = transactionId;
+        this.content = content;
+    }
+
+    public String getTransactionId() { return transactionId; }
+    public String getContent() { return content; }
 }
 
 // ============================================================================
@@ -45,13 +124,30 @@ interface S3StorageService {
 /**
  * Processes card payments and stores receipts using S3.
  * Uses S3StorageService interface (not direct AWS SDK calls).
+ * CardPaymentService adds metrics, idempotency keys, async, bulk and reactive entry points.
  */
 class CardPaymentProcessor {
+    // Shared, also by CardPaymentService, so that processors built with the default never issue the same ID
+    static final TransactionIdGenerator DEFAULT_ID_GENERATOR = new SnowflakeTransactionIdGenerator(0);
+
     private final S3StorageService s3Service;
+    private final TransactionIdGenerator idGenerator;
+    private final boolean storeBytes;
 
     // Constructor injection enables testing with fake implementation
     public CardPaymentProcessor(S3StorageService s3Service) {
+        this(s3Service, DEFAULT_ID_GENERATOR);
+    }
+
+    public CardPaymentProcessor(S3StorageService s3Service, TransactionIdGenerator idGenerator) {
         this.s3Service = s3Service;
+        this.idGenerator = idGenerator;
+        this.storeBytes = s3Service.acceptsBytes();
+    }
+
+    // Gathers receipts from concurrent payments into one storeReceipts call
+    public static CardPaymentProcessor withBatchedStorage(S3StorageService s3Service, int maxBatchSize) {
+        return new CardPaymentProcessor(new BatchingS3StorageService(s3Service, maxBatchSize));
     }
 
     public String processPayment(String cardNumber, double amount) {
@@ -59,22 +155,18 @@ class CardPaymentProcessor {
             return null;
         }
 
-        String transactionId = "TXN-" + System.currentTimeMillis();
-        String receipt = generateReceipt(transactionId, cardNumber, amount);
-
-        boolean stored = s3Service.storeReceipt(transactionId, receipt);
+        String transactionId = idGenerator.nextId();
+        ReceiptEncoder encoder = ReceiptEncoder.forCurrentThread();
+        // Bytes only for stores that write them as is; others would decode them back into a String
+        boolean stored = storeBytes
+                ? s3Service.storeReceipt(transactionId, encoder.encode(transactionId, cardNumber, amount))
+                : s3Service.storeReceipt(transactionId, encoder.render(transactionId, cardNumber, amount));
         return stored ? transactionId : null;
     }
 
-    private boolean isValidCard(String cardNumber) {
+    static boolean isValidCard(String cardNumber) {
         return cardNumber != null && cardNumber.length() >= 13;
     }
-
-    private String generateReceipt(String transactionId, String cardNumber, double amount) {
-        String maskedCard = "****-" + cardNumber.substring(cardNumber.length() - 4);
-        return String.format("Transaction: %s\nCard: %s\nAmount: $%.2f",
-                           transactionId, maskedCard, amount);
-    }
 }
 
 // ============================================================================
@@ -84,26 +176,99 @@ class CardPaymentProcessor {
 /**
  * Fake S3 implementation using in-memory HashMap.
  * Provides realistic, stateful behavior without actual AWS infrastructure.
+ *
+ * snapshot() and restore() let a large baseline be built once and shared:
+ * a restored fake reads through to the snapshot's receipts and keeps its own
+ * writes in a separate map, so restoring is O(1) and never changes the snapshot.
  */
 class FakeS3StorageService implements S3StorageService {
-    private final Map<String, String> storage = new HashMap<>();
+    // Receipts from the last restored snapshot; shared and never modified
+    private Map<String, String> baseline = Map.of();
+    // Receipts stored since the last restore; these win over baseline receipts with the same ID
+    private Map<String, String> storage = new HashMap<>();
+    // Receipts in storage that replaced a baseline receipt, so the count includes them once
+    private int replacedBaselineCount;
 
     @Override
     public boolean storeReceipt(String transactionId, String receiptContent) {
         if (transactionId == null || receiptContent == null) {
             return false;
         }
-        storage.put(transactionId, receiptContent);
+        if (storage.put(transactionId, receiptContent) == null && baseline.containsKey(transactionId)) {
+            replacedBaselineCount++;
+        }
         return true;
     }
 
+    // In-memory store never blocks, so complete immediately instead of using the executor
+    @Override
+    public CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                        Executor executor) {
+        return CompletableFuture.completedFuture(storeReceipt(transactionId, receiptContent));
+    }
+
     // Helper method for test verification
     public String getReceipt(String transactionId) {
-        return storage.get(transactionId);
+        String receipt = storage.get(transactionId);
+        return receipt != null ? receipt : baseline.get(transactionId);
     }
 
     public int getReceiptCount() {
-        return storage.size();
+        return baseline.size() + storage.size() - replacedBaselineCount;
+    }
+
+    /**
+     * Streams stored receipts without copying the underlying maps.
+     * The stream splits for parallel processing. It is also sized, unless a
+     * receipt stored since the last restore replaced a baseline receipt: then
+     * the baseline part is filtered and the size is only known once consumed.
+     * Like HashMap iteration, it must not be used while receipts are being stored.
+     */
+    public Stream<Receipt> receipts() {
+        Stream<Map.Entry<String, String>> baselineEntries = baseline.entrySet().stream();
+        if (replacedBaselineCount > 0) {
+            baselineEntries = baselineEntries.filter(entry -> !storage.containsKey(entry.getKey()));
+        }
+        return Stream.concat(storage.entrySet().stream(), baselineEntries)
+                .map(entry -> new Receipt(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Captures the current receipts. O(1) right after a restore, otherwise
+     * one copy of all receipts; this fake then continues from the new snapshot.
+     */
+    public Snapshot snapshot() {
+        if (!storage.isEmpty()) {
+            Map<String, String> merged = new HashMap<>(baseline);
+            merged.putAll(storage);
+            restore(new Snapshot(Collections.unmodifiableMap(merged)));
+        }
+        return new Snapshot(baseline);
+    }
+
+    /**
+     * Replaces all receipts with the snapshot's receipts in O(1).
+     * Later writes to this fake are not visible in the snapshot or to other fakes restored from it.
+     */
+    public void restore(Snapshot snapshot) {
+        baseline = snapshot.receipts;
+        storage = new HashMap<>();
+        replacedBaselineCount = 0;
+    }
+
+    /**
+     * Immutable set of receipts captured by snapshot().
+     */
+    static final class Snapshot {
+        private final Map<String, String> receipts;
+
+        private Snapshot(Map<String, String> receipts) {
+            this.receipts = receipts;
+        }
+
+        public int getReceiptCount() {
+            return receipts.size();
+        }
     }
 }
 
@@ -136,6 +301,60 @@ class CardPaymentProcessorTest {
         assertTrue(receipt.contains("$99.99"));
     }
 
+    @Test
+    void shouldStoreByteBufferReceiptAsText() {
+        // Act
+        boolean stored = fakeS3.storeReceipt("TXN-1", ByteBuffer.wrap("Amount: $5.00".getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertTrue(stored);
+        assertEquals("Amount: $5.00", fakeS3.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void shouldPassReceiptAsStringToStoreWithoutByteSupport() {
+        // Arrange
+        FakeS3StorageService stringOnlyS3 = new FakeS3StorageService() {
+            @Override
+            public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+                throw new AssertionError("Expected the String overload for a store without byte support");
+            }
+        };
+
+        // Act
+        String transactionId = new CardPaymentProcessor(stringOnlyS3).processPayment("4532123456789010", 99.99);
+
+        // Assert
+        assertTrue(stringOnlyS3.getReceipt(transactionId).contains("$99.99"));
+    }
+
+    @Test
+    void shouldPassReceiptAsBytesToStoreThatAcceptsBytes() {
+        // Arrange
+        FakeS3StorageService bytesS3 = new FakeS3StorageService() {
+            @Override
+            public boolean acceptsBytes() {
+                return true;
+            }
+
+            @Override
+            public boolean storeReceipt(String transactionId, String receiptContent) {
+                throw new AssertionError("Expected the ByteBuffer overload for a store that accepts bytes");
+            }
+
+            @Override
+            public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+                return super.storeReceipt(transactionId, StandardCharsets.UTF_8.decode(receiptContent).toString());
+            }
+        };
+
+        // Act
+        String transactionId = new CardPaymentProcessor(bytesS3).processPayment("4532123456789010", 99.99);
+
+        // Assert
+        assertTrue(bytesS3.getReceipt(transactionId).contains("$99.99"));
+    }
+
     @Test
     void shouldRejectInvalidCardNumber() {
         // Act
@@ -0,0 +1,98 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating snapshot and restore of FakeS3StorageService state.
+ *
+ * Key Points:
+ * 1. @BeforeAll builds a large receipt baseline once and snapshots it
+ * 2. @BeforeEach restores the snapshot in O(1) instead of rebuilding 100k receipts
+ * 3. Each test writes on top of its own view; the snapshot never changes
+ * 4. Tests stay independent: they pass in any order
+ */
+
+// ============================================================================
+// TESTS USING SNAPSHOT AND RESTORE
+// ============================================================================
+
+class FakeS3SnapshotTest {
+    private static final int BASELINE_RECEIPTS = 100_000;
+    private static FakeS3StorageService.Snapshot baseline;
+
+    private FakeS3StorageService fakeS3;
+    private CardPaymentProcessor processor;
+
+    // ✅ GOOD EXAMPLE: expensive, immutable baseline built once for all tests
+    @BeforeAll
+    static void buildBaseline() {
+        FakeS3StorageService builder = new FakeS3StorageService();
+        IntStream.range(0, BASELINE_RECEIPTS)
+                .forEach(i -> builder.storeReceipt("TXN-BASE-" + i, "Receipt " + i));
+        baseline = builder.snapshot();
+    }
+
+    // Fresh, isolated view of the baseline for every test
+    @BeforeEach
+    void setUp() {
+        fakeS3 = new FakeS3StorageService();
+        fakeS3.restore(baseline);
+        processor = new CardPaymentProcessor(fakeS3);
+    }
+
+    @Test
+    void processPayment_restoredBaseline_addsReceiptOnTopOfBaseline() {
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 99.99);
+
+        // Assert
+        assertEquals(BASELINE_RECEIPTS + 1, fakeS3.getReceiptCount());
+        assertNotNull(fakeS3.getReceipt(transactionId));
+        assertEquals("Receipt 42", fakeS3.getReceipt("TXN-BASE-42"));
+    }
+
+    @Test
+    void storeReceipt_overwritesBaselineReceipt_leavesSnapshotUnchanged() {
+        // Act
+        fakeS3.storeReceipt("TXN-BASE-1", "corrected receipt");
+
+        // Assert
+        assertEquals("corrected receipt", fakeS3.getReceipt("TXN-BASE-1"));
+        assertEquals(BASELINE_RECEIPTS, fakeS3.getReceiptCount(), "Expected overwrite not to add a receipt");
+        assertEquals(BASELINE_RECEIPTS, baseline.getReceiptCount());
+    }
+
+    @Test
+    void restore_afterWrites_discardsWritesMadeSinceRestore() {
+        // Arrange
+        fakeS3.storeReceipt("TXN-NEW", "new receipt");
+
+        // Act
+        fakeS3.restore(baseline);
+
+        // Assert
+        assertNull(fakeS3.getReceipt("TXN-NEW"));
+        assertEquals(BASELINE_RECEIPTS, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void snapshot_afterWrites_includesBaselineAndNewReceipts() {
+        // Arrange
+        fakeS3.storeReceipt("TXN-NEW", "new receipt");
+
+        // Act
+        FakeS3StorageService.Snapshot extended = fakeS3.snapshot();
+
+        // Assert
+        FakeS3StorageService other = new FakeS3StorageService();
+        other.restore(extended);
+        assertEquals(BASELINE_RECEIPTS + 1, extended.getReceiptCount());
+        assertEquals("new receipt", other.getReceipt("TXN-NEW"));
+    }
+}
@@ -0,0 +1,363 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a fault-injecting decorator for load testing CardPaymentProcessor.
+ *
+ * Key Points:
+ * 1. Wraps any S3StorageService, including the fakes, without changing it
+ * 2. Latency comes from a pluggable distribution: fixed, uniform, log-normal or recorded
+ * 3. Error and stall rates simulate a struggling object store
+ * 4. A seed makes every run inject the same faults on the same calls
+ */
+
+// ============================================================================
+// LATENCY DISTRIBUTIONS
+// ============================================================================
+
+/**
+ * Distribution of injected storage latency.
+ */
+interface LatencyDistribution {
+    /**
+     * @param random Random source for this call; seeded by the decorator
+     * @return latency to inject, in nanoseconds
+     */
+    long sampleNanos(SplittableRandom random);
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("max must not be less than min, were " + min + " and " + max);
+        }
+        return random -> minNanos + random.nextLong(maxNanos - minNanos + 1);
+    }
+
+    /**
+     * Log-normal latency, the usual shape of object store response times.
+     * @param median Median latency
+     * @param sigma Standard deviation of the underlying normal; larger values mean a longer tail
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        double mu = Math.log(median.toNanos());
+        return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+
+    /**
+     * Replays latencies recorded from a real store, such as histogram buckets from production.
+     * @param latencies Recorded latency values
+     * @param counts How many times each latency was observed
+     */
+    static LatencyDistribution recorded(Duration[] latencies, long[] counts) {
+        if (latencies.length == 0 || latencies.length != counts.length) {
+            throw new IllegalArgumentException("Need one count per recorded latency, got "
+                    + latencies.length + " latencies and " + counts.length + " counts");
+        }
+        // Empty buckets are left out, so cumulative counts strictly increase and the search cannot land on one
+        long[] nanos = new long[latencies.length];
+        long[] cumulativeCounts = new long[counts.length];
+        int buckets = 0;
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < 0) {
+                throw new IllegalArgumentException("Recorded counts must not be negative, was " + counts[i]
+                        + " for " + latencies[i]);
+            }
+            if (counts[i] > 0) {
+                total += counts[i];
+                nanos[buckets] = latencies[i].toNanos();
+                cumulativeCounts[buckets] = total;
+                buckets++;
+            }
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Recorded counts must add up to more than zero");
+        }
+        long[] bucketNanos = Arrays.copyOf(nanos, buckets);
+        long[] bucketCumulativeCounts = Arrays.copyOf(cumulativeCounts, buckets);
+        long totalCount = total;
+        return random -> {
+            long target = random.nextLong(totalCount);
+            int index = Arrays.binarySearch(bucketCumulativeCounts, target + 1);
+            return bucketNanos[index >= 0 ? index : -index - 1];
+        };
+    }
+}
+
+// ============================================================================
+// FAULT-INJECTING DECORATOR
+// ============================================================================
+
+/**
+ * Adds latency, errors and stalls in front of another S3StorageService.
+ *
+ * Every call draws from its own random stream, derived from the seed and the
+ * call's sequence number, so a single-threaded run with the same seed always
+ * injects the same faults. With many threads the same set of faults is
+ * injected, but which thread gets which fault depends on scheduling.
+ *
+ * Injected errors return false without calling the delegate, matching how
+ * storeReceipt reports failure. A batch is delayed once, as a pipelined write
+ * would be, but each receipt in it can fail on its own.
+ */
+class FaultInjectingS3StorageService implements S3StorageService {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final S3StorageService delegate;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double stallRate;
+    private final long stallNanos;
+    private final long seed;
+    private final AtomicLong callSequence = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedStalls = new AtomicLong();
+
+    public FaultInjectingS3StorageService(S3StorageService delegate, LatencyDistribution latency,
+                                          double errorRate, double stallRate, Duration stallDuration, long seed) {
+        if (errorRate < 0 || errorRate > 1 || stallRate < 0 || stallRate > 1) {
+            throw new IllegalArgumentException("errorRate and stallRate must be between 0 and 1, were "
+                    + errorRate + " and " + stallRate);
+        }
+        this.delegate = delegate;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.stallRate = stallRate;
+        this.stallNanos = stallDuration.toNanos();
+        this.seed = seed;
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        SplittableRandom random = nextCallRandom();
+        pause(nextDelayNanos(random));
+        return !injectError(random) && delegate.storeReceipt(transactionId, receiptContent);
+    }
+
+    @Override
+    public boolean acceptsBytes() {
+        return delegate.acceptsBytes();
+    }
+
+    // Passes bytes through so a byte-oriented delegate keeps its copy-free path
+    @Override
+    public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        SplittableRandom random = nextCallRandom();
+        pause(nextDelayNanos(random));
+        return !injectError(random) && delegate.storeReceipt(transactionId, receiptContent);
+    }
+
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        SplittableRandom random = nextCallRandom();
+        pause(nextDelayNanos(random));
+        List<Receipt> passed = new ArrayList<>(receipts.size());
+        boolean[] failed = new boolean[receipts.size()];
+        int i = 0;
+        for (Receipt receipt : receipts) {
+            failed[i] = injectError(random);
+            if (!failed[i]) {
+                passed.add(receipt);
+            }
+            i++;
+        }
+        List<Boolean> delegateResults = delegate.storeReceipts(passed);
+        List<Boolean> results = new ArrayList<>(failed.length);
+        int next = 0;
+        for (boolean itemFailed : failed) {
+            results.add(!itemFailed && Boolean.TRUE.equals(delegateResults.get(next++)));
+        }
+        return results;
+    }
+
+    // Delays on a timer instead of parking the caller, so async callers stay non-blocking
+    @Override
+    public CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                        Executor executor) {
+        SplittableRandom random = nextCallRandom();
+        long delayNanos = nextDelayNanos(random);
+        boolean fail = injectError(random);
+        Executor delayed = CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor);
+        return CompletableFuture.runAsync(() -> { }, delayed)
+                .thenCompose(ignored -> fail
+                        ? CompletableFuture.completedFuture(false)
+                        : delegate.storeReceiptAsync(transactionId, receiptContent, executor));
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getInjectedStallCount() {
+        return injectedStalls.get();
+    }
+
+    private SplittableRandom nextCallRandom() {
+        return new SplittableRandom(seed + callSequence.getAndIncrement() * GOLDEN_GAMMA);
+    }
+
+    private long nextDelayNanos(SplittableRandom random) {
+        if (stallRate > 0 && random.nextDouble() < stallRate) {
+            injectedStalls.incrementAndGet();
+            return stallNanos;
+        }
+        return latency.sampleNanos(random);
+    }
+
+    private boolean injectError(SplittableRandom random) {
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // parkNanos may return early, so park again until the full delay has passed
+    private static void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING FAULT INJECTION
+// ============================================================================
+
+class FaultInjectingS3StorageServiceTest {
+    private static final LatencyDistribution NO_LATENCY = LatencyDistribution.fixed(Duration.ZERO);
+
+    @Test
+    void storeReceipt_sameSeed_injectsSameFaultsOnSameCalls() {
+        // Arrange
+        FaultInjectingS3StorageService firstRun = new FaultInjectingS3StorageService(
+                new FakeS3StorageService(), NO_LATENCY, 0.3, 0, Duration.ZERO, 42);
+        FaultInjectingS3StorageService secondRun = new FaultInjectingS3StorageService(
+                new FakeS3StorageService(), NO_LATENCY, 0.3, 0, Duration.ZERO, 42);
+
+        // Act
+        List<Boolean> firstResults = storeReceipts(firstRun, 200);
+        List<Boolean> secondResults = storeReceipts(secondRun, 200);
+
+        // Assert
+        assertEquals(firstResults, secondResults, "Expected identical fault sequence for identical seeds");
+        assertTrue(firstRun.getInjectedErrorCount() > 0, "Expected some injected errors at 30% error rate");
+    }
+
+    @Test
+    void storeReceipt_errorRateOne_returnsFalseWithoutStoring() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        FaultInjectingS3StorageService faulty = new FaultInjectingS3StorageService(
+                fakeS3, NO_LATENCY, 1.0, 0, Duration.ZERO, 1);
+
+        // Act
+        boolean stored = faulty.storeReceipt("TXN-1", "receipt");
+
+        // Assert
+        assertFalse(stored);
+        assertEquals(0, fakeS3.getReceiptCount());
+    }
+
+    @Test
+    void storeReceipt_fixedLatency_takesAtLeastThatLong() {
+        // Arrange
+        FaultInjectingS3StorageService slow = new FaultInjectingS3StorageService(
+                new FakeS3StorageService(), LatencyDistribution.fixed(Duration.ofMillis(5)), 0, 0, Duration.ZERO, 1);
+        long start = System.nanoTime();
+
+        // Act
+        slow.storeReceipt("TXN-1", "receipt");
+
+        // Assert
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 5, "Expected at least 5ms injected latency, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void sampleNanos_recordedDistribution_returnsOnlyRecordedLatencies() {
+        // Arrange
+        LatencyDistribution recorded = LatencyDistribution.recorded(
+                new Duration[] {Duration.ofMillis(2), Duration.ofMillis(40)}, new long[] {99, 1});
+        SplittableRandom random = new SplittableRandom(7);
+
+        // Act
+        List<Long> samples = IntStream.range(0, 1_000)
+                .mapToObj(i -> recorded.sampleNanos(random))
+                .distinct().sorted().collect(Collectors.toList());
+
+        // Assert
+        assertEquals(List.of(Duration.ofMillis(2).toNanos(), Duration.ofMillis(40).toNanos()), samples);
+    }
+
+    @Test
+    void sampleNanos_recordedDistributionWithEmptyBucket_neverReturnsEmptyBucketLatency() {
+        // Arrange
+        LatencyDistribution recorded = LatencyDistribution.recorded(
+                new Duration[] {Duration.ofMillis(2), Duration.ofMillis(10), Duration.ofMillis(40)}, new long[] {5, 0, 5});
+        SplittableRandom random = new SplittableRandom(7);
+
+        // Act
+        List<Long> samples = IntStream.range(0, 1_000)
+                .mapToObj(i -> recorded.sampleNanos(random))
+                .distinct().sorted().collect(Collectors.toList());
+
+        // Assert
+        assertEquals(List.of(Duration.ofMillis(2).toNanos(), Duration.ofMillis(40).toNanos()), samples);
+    }
+
+    @Test
+    void recorded_negativeCount_throwsIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.recorded(
+                new Duration[] {Duration.ofMillis(2), Duration.ofMillis(40)}, new long[] {5, -1}));
+    }
+
+    @Test
+    void processPayment_storageErrorInjected_returnsNull() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(new FaultInjectingS3StorageService(
+                new FakeS3StorageService(), NO_LATENCY, 1.0, 0, Duration.ZERO, 1));
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 10.00);
+
+        // Assert
+        assertNull(transactionId, "Expected payment to fail when storage fails");
+    }
+
+    private static List<Boolean> storeReceipts(S3StorageService storage, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> storage.storeReceipt("TXN-" + i, "receipt"))
+                .collect(Collectors.toList());
+    }
+}
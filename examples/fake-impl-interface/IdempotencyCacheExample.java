@@ -0,0 +1,360 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating idempotency keys for CardPaymentService.processPayment.
+ *
+ * Key Points:
+ * 1. A repeated idempotency key returns the original transaction ID instead of charging again
+ * 2. Concurrent duplicates share one in-flight payment (single flight)
+ * 3. Only successful payments are remembered, so a failed payment can be retried
+ * 4. The cache is bounded and entries expire after a TTL
+ * 5. Reusing a key for a different card or amount is rejected instead of returning the first payment
+ */
+
+// ============================================================================
+// IDEMPOTENCY CACHE
+// ============================================================================
+
+/**
+ * Bounded, TTL-expiring map from idempotency key to transaction ID.
+ *
+ * The first caller for a key runs the payment; callers arriving while it runs
+ * wait for the same result, failures included. A null result or an exception
+ * is not cached, so the next caller with that key tries again. Successful
+ * entries are evicted oldest first once there are more than maxEntries, and
+ * expire ttl after the payment started.
+ *
+ * Each entry keeps a SHA-256 fingerprint of the payment's card number and
+ * amount, never the card number itself. A caller that reuses a live key for a
+ * different payment gets an IllegalArgumentException rather than the first
+ * payment's transaction ID.
+ */
+final class IdempotencyCache {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    });
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Successful entries in completion order; roughly creation order, which is what expiry needs
+    private final ConcurrentLinkedQueue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public IdempotencyCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    // nanoClock lets tests expire entries without sleeping
+    public IdempotencyCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Identifies a payment by card number and amount, so a reused key can be told apart.
+     */
+    static byte[] fingerprint(String cardNumber, double amount) {
+        MessageDigest digest = SHA_256.get();
+        digest.update(String.valueOf(cardNumber).getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(Double.doubleToLongBits(amount)).array());
+        return digest.digest();
+    }
+
+    /**
+     * Returns the cached or in-flight result for the key, or runs the payment if there is none.
+     * @param fingerprint Fingerprint of the payment, from fingerprint(cardNumber, amount)
+     * @param payment Runs the payment; returns the transaction ID, or null on failure
+     * @throws IllegalArgumentException if the key is cached or in flight for a different fingerprint
+     */
+    String computeIfAbsent(String idempotencyKey, byte[] fingerprint, Supplier<String> payment) {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Entry existing = entries.get(idempotencyKey);
+            if (existing != null && !existing.isExpired(now, ttlNanos)) {
+                if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                    throw new IllegalArgumentException(
+                            "Idempotency key " + idempotencyKey + " was already used for a different payment");
+                }
+                return join(existing);
+            }
+            Entry created = new Entry(idempotencyKey, fingerprint, now);
+            boolean won = existing == null
+                    ? entries.putIfAbsent(idempotencyKey, created) == null
+                    : entries.replace(idempotencyKey, existing, created);
+            if (won) {
+                return run(created, payment);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private String run(Entry entry, Supplier<String> payment) {
+        String transactionId;
+        try {
+            transactionId = payment.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        if (transactionId == null) {
+            entries.remove(entry.key, entry);
+        } else {
+            evictionQueue.add(entry);
+        }
+        entry.result.complete(transactionId);
+        evictIfNeeded();
+        return transactionId;
+    }
+
+    private static String join(Entry entry) {
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // One thread evicts at a time; others skip rather than wait
+    private void evictIfNeeded() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = nanoClock.getAsLong();
+            Entry oldest;
+            while ((oldest = evictionQueue.peek()) != null
+                    && (entries.size() > maxEntries || oldest.isExpired(now, ttlNanos))) {
+                evictionQueue.poll();
+                entries.remove(oldest.key, oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final byte[] fingerprint;
+        private final long createdNanos;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Entry(String key, byte[] fingerprint, long createdNanos) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.createdNanos = createdNanos;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return now - createdNanos >= ttlNanos;
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING IDEMPOTENCY KEYS
+// ============================================================================
+
+class IdempotencyCacheTest {
+    private static final String VALID_CARD = "4532123456789010";
+    private static final byte[] FINGERPRINT = IdempotencyCache.fingerprint(VALID_CARD, 10.00);
+
+    @Test
+    void processPayment_repeatedIdempotencyKey_returnsOriginalTransaction() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        CardPaymentService service = serviceWithIdempotency(fakeS3);
+
+        // Act
+        String first = service.processPayment("order-42", VALID_CARD, 10.00);
+        String repeat = service.processPayment("order-42", VALID_CARD, 10.00);
+
+        // Assert
+        assertEquals(first, repeat);
+        assertEquals(1, fakeS3.getReceiptCount(), "Expected the repeat not to store a second receipt");
+    }
+
+    @Test
+    void processPayment_concurrentDuplicates_processPaymentOnce() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        GatedS3StorageService gated = new GatedS3StorageService(release);
+        CardPaymentService service = serviceWithIdempotency(gated);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            // Act
+            Future<String> first = executor.submit(() -> service.processPayment("order-7", VALID_CARD, 25.00));
+            Future<String> second = executor.submit(() -> service.processPayment("order-7", VALID_CARD, 25.00));
+            Future<String> third = executor.submit(() -> service.processPayment("order-7", VALID_CARD, 25.00));
+            assertTrue(gated.awaitFirstWrite(), "Expected one payment to reach storage");
+            release.countDown();
+
+            // Assert
+            String transactionId = first.get(10, TimeUnit.SECONDS);
+            assertEquals(transactionId, second.get(10, TimeUnit.SECONDS));
+            assertEquals(transactionId, third.get(10, TimeUnit.SECONDS));
+            assertEquals(1, gated.getWriteCount(), "Expected concurrent duplicates to share one payment");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void processPayment_keyReusedForDifferentAmount_throwsIllegalArgumentException() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        CardPaymentService service = serviceWithIdempotency(fakeS3);
+        service.processPayment("order-42", VALID_CARD, 10.00);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.processPayment("order-42", VALID_CARD, 99.00));
+        assertEquals(1, fakeS3.getReceiptCount(), "Expected the mismatched payment not to be charged");
+    }
+
+    @Test
+    void processPayment_keyReusedForDifferentCard_throwsIllegalArgumentException() {
+        // Arrange
+        CardPaymentService service = serviceWithIdempotency(new FakeS3StorageService());
+        service.processPayment("order-42", VALID_CARD, 10.00);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> service.processPayment("order-42", "5105105105105100", 10.00));
+    }
+
+    @Test
+    void processPayment_noIdempotencyCache_throwsIllegalStateException() {
+        // Arrange
+        CardPaymentService service = CardPaymentService.builder(new FakeS3StorageService()).build();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> service.processPayment("order-42", VALID_CARD, 10.00));
+    }
+
+    @Test
+    void computeIfAbsent_failedPayment_isNotCached() {
+        // Arrange
+        IdempotencyCache cache = new IdempotencyCache(100, Duration.ofHours(1));
+
+        // Act
+        String failed = cache.computeIfAbsent("order-1", FINGERPRINT, () -> null);
+        String retried = cache.computeIfAbsent("order-1", FINGERPRINT, () -> "TXN-2");
+
+        // Assert
+        assertNull(failed);
+        assertEquals("TXN-2", retried);
+    }
+
+    @Test
+    void computeIfAbsent_entryOlderThanTtl_runsPaymentAgain() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(10), clock::get);
+        cache.computeIfAbsent("order-1", FINGERPRINT, () -> "TXN-1");
+
+        // Act
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        String afterExpiry = cache.computeIfAbsent("order-1", FINGERPRINT, () -> "TXN-2");
+
+        // Assert
+        assertEquals("TXN-2", afterExpiry);
+    }
+
+    @Test
+    void computeIfAbsent_moreKeysThanMaxEntries_evictsOldest() {
+        // Arrange
+        IdempotencyCache cache = new IdempotencyCache(2, Duration.ofHours(1));
+
+        // Act
+        cache.computeIfAbsent("order-1", FINGERPRINT, () -> "TXN-1");
+        cache.computeIfAbsent("order-2", FINGERPRINT, () -> "TXN-2");
+        cache.computeIfAbsent("order-3", FINGERPRINT, () -> "TXN-3");
+
+        // Assert
+        assertEquals(2, cache.size());
+        assertEquals("TXN-NEW", cache.computeIfAbsent("order-1", FINGERPRINT, () -> "TXN-NEW"),
+                "Expected oldest key evicted");
+    }
+
+    private static CardPaymentService serviceWithIdempotency(S3StorageService storage) {
+        return CardPaymentService.builder(storage)
+                .idempotencyCache(new IdempotencyCache(100, Duration.ofHours(1)))
+                .build();
+    }
+
+    // Holds every write until released, so duplicates pile up while the first payment is in flight
+    private static class GatedS3StorageService extends FakeS3StorageService {
+        private final CountDownLatch release;
+        private final CountDownLatch firstWrite = new CountDownLatch(1);
+        private final AtomicInteger writes = new AtomicInteger();
+
+        GatedS3StorageService(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            writes.incrementAndGet();
+            firstWrite.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            synchronized (this) {
+                return super.storeReceipt(transactionId, receiptContent);
+            }
+        }
+
+        boolean awaitFirstWrite() throws InterruptedException {
+            return firstWrite.await(10, TimeUnit.SECONDS);
+        }
+
+        int getWriteCount() {
+            return writes.get();
+        }
+    }
+}
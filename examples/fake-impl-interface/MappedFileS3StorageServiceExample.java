@@ -0,0 +1,453 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a durable local S3StorageService implementation.
+ *
+ * Key Points:
+ * 1. Receipts are appended to memory-mapped segment files - no per-write system call
+ * 2. An in-memory index maps transaction IDs to record offsets
+ * 3. ByteBuffer receipts are copied straight into the mapping; reads can return
+ *    a read-only view of the mapped bytes without copying
+ * 4. Reopening the directory rebuilds the index, so it works as a soak-test store or local spool
+ */
+
+// ============================================================================
+// MEMORY-MAPPED IMPLEMENTATION
+// ============================================================================
+
+/**
+ * Append-only S3StorageService backed by memory-mapped segment files.
+ *
+ * Each segment is a fixed-size file named segment-NNNNNN.log. Records are
+ * [int idLength][int contentLength][id UTF-8][content UTF-8]; unused space is
+ * zero-filled, so an idLength of 0 marks the end of a segment's data.
+ * Storing an existing transaction ID appends a new record and the index points
+ * at the newest one.
+ *
+ * Appends are serialized by a lock held only while copying bytes into the
+ * mapping. Reads never lock. Data reaches the page cache on return from
+ * storeReceipt and survives a process crash; call force() to also survive
+ * an OS crash. After close(), stores return false; stored receipts stay readable.
+ *
+ * Recovery maps the segment files that exist, by the number in their name, so
+ * a missing segment loses only its own receipts. New records go to the
+ * highest-numbered segment.
+ */
+class MappedFileS3StorageService implements S3StorageService, Closeable {
+    static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{6})\\.log");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    // Indexed by segment file number, null where a file is missing. Replaced (never mutated)
+    // when a segment is added, so readers need no lock
+    private volatile MappedByteBuffer[] segments;
+    private int writePosition;
+    private boolean closed;
+
+    public MappedFileS3StorageService(Path directory, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentSize must exceed " + RECORD_HEADER_BYTES + " bytes, was " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            this.segments = recoverSegments();
+            if (segments.length == 0) {
+                segments = new MappedByteBuffer[] {mapSegment(0)};
+                writePosition = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open receipt segments in " + directory, e);
+        }
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        byte[] id = transactionId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer content = ByteBuffer.wrap(receiptContent.getBytes(StandardCharsets.UTF_8));
+        synchronized (appendLock) {
+            return append(transactionId, id, content);
+        }
+    }
+
+    @Override
+    public boolean acceptsBytes() {
+        return true;
+    }
+
+    // Copies the caller's buffer straight into the mapped segment, with no String or byte[] in between
+    @Override
+    public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        if (transactionId == null || receiptContent == null) {
+            return false;
+        }
+        byte[] id = transactionId.getBytes(StandardCharsets.UTF_8);
+        synchronized (appendLock) {
+            return append(transactionId, id, receiptContent);
+        }
+    }
+
+    // Writes the whole batch under one lock acquisition
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        List<Boolean> results = new ArrayList<>(receipts.size());
+        synchronized (appendLock) {
+            for (Receipt receipt : receipts) {
+                boolean valid = receipt.getTransactionId() != null && receipt.getContent() != null;
+                results.add(valid && append(receipt.getTransactionId(),
+                        receipt.getTransactionId().getBytes(StandardCharsets.UTF_8),
+                        ByteBuffer.wrap(receipt.getContent().getBytes(StandardCharsets.UTF_8))));
+            }
+        }
+        return results;
+    }
+
+    public String getReceipt(String transactionId) {
+        ByteBuffer bytes = getReceiptBytes(transactionId);
+        return bytes == null ? null : StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    /**
+     * Returns the stored receipt as a read-only view of the mapped file, without copying.
+     * @return receipt bytes, or null if the transaction ID is unknown
+     */
+    public ByteBuffer getReceiptBytes(String transactionId) {
+        Long location = index.get(transactionId);
+        if (location == null) {
+            return null;
+        }
+        MappedByteBuffer segment = segments[(int) (location >>> 32)];
+        int offset = (int) (long) location;
+        int idLength = segment.getInt(offset);
+        int contentLength = segment.getInt(offset + Integer.BYTES);
+        return segment.slice(offset + RECORD_HEADER_BYTES + idLength, contentLength).asReadOnlyBuffer();
+    }
+
+    public int getReceiptCount() {
+        return index.size();
+    }
+
+    /**
+     * Flushes all written segments to the storage device.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        force();
+    }
+
+    // Called with appendLock held; consumes content from its position to its limit
+    private boolean append(String transactionId, byte[] id, ByteBuffer content) {
+        int contentLength = content.remaining();
+        int recordSize = RECORD_HEADER_BYTES + id.length + contentLength;
+        if (closed || id.length == 0 || recordSize > segmentSize) {
+            return false;
+        }
+        if (writePosition + recordSize > segmentSize) {
+            rollSegment();
+        }
+        int segmentIndex = segments.length - 1;
+        MappedByteBuffer segment = segments[segmentIndex];
+        int offset = writePosition;
+        segment.put(offset + RECORD_HEADER_BYTES, id);
+        segment.put(offset + RECORD_HEADER_BYTES + id.length, content, content.position(), contentLength);
+        content.position(content.limit());
+        segment.putInt(offset + Integer.BYTES, contentLength);
+        // Length of the ID goes last: recovery treats a record without it as unwritten
+        segment.putInt(offset, id.length);
+        writePosition = offset + recordSize;
+        index.put(transactionId, ((long) segmentIndex << 32) | offset);
+        return true;
+    }
+
+    private void rollSegment() {
+        try {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+            grown[segments.length] = mapSegment(segments.length);
+            segments = grown;
+            writePosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create receipt segment in " + directory, e);
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int segmentIndex) throws IOException {
+        Path file = directory.resolve(String.format("segment-%06d.log", segmentIndex));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    // Maps the segment files that exist, in number order, and rebuilds the index from their records
+    private MappedByteBuffer[] recoverSegments() throws IOException {
+        int[] segmentNumbers;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentNumbers = files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(name -> Integer.parseInt(name.group(1)))
+                    .sorted()
+                    .toArray();
+        }
+        if (segmentNumbers.length == 0) {
+            return new MappedByteBuffer[0];
+        }
+        MappedByteBuffer[] recovered = new MappedByteBuffer[segmentNumbers[segmentNumbers.length - 1] + 1];
+        for (int segmentIndex : segmentNumbers) {
+            MappedByteBuffer segment = mapSegment(segmentIndex);
+            recovered[segmentIndex] = segment;
+            writePosition = scanSegment(segmentIndex, segment);
+        }
+        return recovered;
+    }
+
+    private int scanSegment(int segmentIndex, MappedByteBuffer segment) {
+        int offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= segmentSize) {
+            int idLength = segment.getInt(offset);
+            int contentLength = segment.getInt(offset + Integer.BYTES);
+            // long, so corrupt lengths cannot overflow past the bounds check
+            long recordSize = RECORD_HEADER_BYTES + (long) idLength + contentLength;
+            if (idLength <= 0 || contentLength < 0 || offset + recordSize > segmentSize) {
+                break;
+            }
+            byte[] id = new byte[idLength];
+            segment.get(offset + RECORD_HEADER_BYTES, id);
+            index.put(new String(id, StandardCharsets.UTF_8), ((long) segmentIndex << 32) | offset);
+            offset += (int) recordSize;
+        }
+        return offset;
+    }
+}
+
+// ============================================================================
+// TESTS USING MEMORY-MAPPED IMPLEMENTATION
+// ============================================================================
+
+class MappedFileS3StorageServiceTest {
+    @TempDir
+    Path receiptDirectory;
+
+    @Test
+    void storeReceipt_validReceipt_canBeReadBack() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+
+        // Act
+        boolean stored = storage.storeReceipt("TXN-1", "Amount: $99.99");
+
+        // Assert
+        assertTrue(stored);
+        assertEquals("Amount: $99.99", storage.getReceipt("TXN-1"));
+        assertEquals(1, storage.getReceiptCount());
+    }
+
+    @Test
+    void constructor_existingSegments_recoversStoredReceipts() {
+        // Arrange
+        try (MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096)) {
+            storage.storeReceipt("TXN-1", "first");
+            storage.storeReceipt("TXN-2", "second");
+        }
+
+        // Act
+        MappedFileS3StorageService reopened = new MappedFileS3StorageService(receiptDirectory, 4096);
+        reopened.storeReceipt("TXN-3", "third");
+
+        // Assert
+        assertEquals(3, reopened.getReceiptCount());
+        assertEquals("second", reopened.getReceipt("TXN-2"));
+        assertEquals("third", reopened.getReceipt("TXN-3"));
+    }
+
+    @Test
+    void constructor_middleSegmentMissing_recoversOtherSegments() throws IOException {
+        // Arrange
+        try (MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 64)) {
+            storage.storeReceipt("TXN-1", "a receipt of thirty-two bytes..");
+            storage.storeReceipt("TXN-2", "a receipt of thirty-two bytes..");
+            storage.storeReceipt("TXN-3", "a receipt of thirty-two bytes..");
+        }
+        Files.delete(receiptDirectory.resolve("segment-000001.log"));
+
+        // Act
+        MappedFileS3StorageService reopened = new MappedFileS3StorageService(receiptDirectory, 64);
+        reopened.storeReceipt("TXN-4", "a receipt of thirty-two bytes..");
+
+        // Assert
+        assertEquals("a receipt of thirty-two bytes..", reopened.getReceipt("TXN-1"));
+        assertNull(reopened.getReceipt("TXN-2"), "Expected receipts of the missing segment to be gone");
+        assertEquals("a receipt of thirty-two bytes..", reopened.getReceipt("TXN-3"));
+        assertTrue(Files.exists(receiptDirectory.resolve("segment-000003.log")),
+                "Expected new receipts after the highest existing segment");
+    }
+
+    @Test
+    void constructor_corruptRecordLengths_stopsRecoveryAtCorruptRecord() throws IOException {
+        // Arrange
+        try (MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096)) {
+            storage.storeReceipt("TXN-1", "first");
+        }
+        // The first record takes 8 header bytes plus "TXN-1" and "first", so the next header starts at 18
+        writeRecordHeader(receiptDirectory.resolve("segment-000000.log"), 18, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        // Act
+        MappedFileS3StorageService reopened = new MappedFileS3StorageService(receiptDirectory, 4096);
+
+        // Assert
+        assertEquals(1, reopened.getReceiptCount());
+        assertEquals("first", reopened.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_afterClose_returnsFalse() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+        storage.storeReceipt("TXN-1", "first");
+        storage.close();
+
+        // Act
+        boolean stored = storage.storeReceipt("TXN-2", "second");
+
+        // Assert
+        assertFalse(stored);
+        assertEquals("first", storage.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_segmentFull_rollsToNewSegment() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 64);
+
+        // Act
+        storage.storeReceipt("TXN-1", "a receipt of thirty-two bytes..");
+        storage.storeReceipt("TXN-2", "a receipt of thirty-two bytes..");
+
+        // Assert
+        assertTrue(Files.exists(receiptDirectory.resolve("segment-000001.log")),
+                "Expected second receipt to be written to a new segment file");
+        assertEquals("a receipt of thirty-two bytes..", storage.getReceipt("TXN-1"));
+        assertEquals("a receipt of thirty-two bytes..", storage.getReceipt("TXN-2"));
+    }
+
+    @Test
+    void storeReceipt_receiptLargerThanSegment_returnsFalse() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 32);
+
+        // Act
+        boolean stored = storage.storeReceipt("TXN-1", "this receipt does not fit in one segment");
+
+        // Assert
+        assertFalse(stored);
+        assertEquals(0, storage.getReceiptCount());
+    }
+
+    @Test
+    void getReceiptBytes_storedReceipt_returnsReadOnlyView() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+        storage.storeReceipt("TXN-1", "receipt");
+
+        // Act
+        ByteBuffer bytes = storage.getReceiptBytes("TXN-1");
+
+        // Assert
+        assertTrue(bytes.isReadOnly());
+        assertEquals(7, bytes.remaining());
+    }
+
+    @Test
+    void storeReceipt_directByteBuffer_storesBytesAndConsumesBuffer() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+        ByteBuffer receipt = ByteBuffer.allocateDirect(64);
+        receipt.put("Amount: $12.00".getBytes(StandardCharsets.UTF_8)).flip();
+
+        // Act
+        boolean stored = storage.storeReceipt("TXN-1", receipt);
+
+        // Assert
+        assertTrue(stored);
+        assertEquals(0, receipt.remaining(), "Expected storage to consume the buffer like a channel write");
+        assertEquals("Amount: $12.00", storage.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_bufferReusedAfterReturn_keepsStoredReceipt() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+        ByteBuffer reusable = ByteBuffer.wrap("first".getBytes(StandardCharsets.UTF_8));
+        storage.storeReceipt("TXN-1", reusable);
+
+        // Act
+        reusable.clear().put("XXXXX".getBytes(StandardCharsets.UTF_8));
+
+        // Assert
+        assertEquals("first", storage.getReceipt("TXN-1"));
+    }
+
+    // Overwrites the header of the record at offset, as a torn or corrupted write would leave it
+    private static void writeRecordHeader(Path segment, int offset, int idLength, int contentLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(MappedFileS3StorageService.RECORD_HEADER_BYTES)
+                    .putInt(idLength).putInt(contentLength).flip();
+            channel.write(header, offset);
+        }
+    }
+
+    @Test
+    void processPayment_withMappedFileStorage_persistsReceipt() {
+        // Arrange
+        MappedFileS3StorageService storage = new MappedFileS3StorageService(receiptDirectory, 4096);
+        CardPaymentProcessor processor = new CardPaymentProcessor(storage);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 25.00);
+
+        // Assert
+        assertNotNull(transactionId);
+        assertTrue(storage.getReceipt(transactionId).contains("$25.00"));
+    }
+}
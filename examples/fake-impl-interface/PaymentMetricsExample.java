@@ -0,0 +1,664 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating low-overhead metrics for CardPaymentService and S3StorageService.
+ *
+ * Key Points:
+ * 1. LatencyRecorder keeps a log-linear latency histogram in a fixed set of stripes, so recording rarely contends
+ * 2. MeteredS3StorageService decorates any storage with call, error and latency metrics
+ * 3. PaymentMetrics times card validation, receipt generation and receipt storage
+ * 4. snapshot() sums the striped histograms into an immutable, exportable view
+ * 5. WindowedLatencyRecorder rotates recorders so percentiles cover only recent calls
+ */
+
+// ============================================================================
+// LATENCY RECORDER
+// ============================================================================
+
+/**
+ * Records call counts, error counts and latencies into a log-linear histogram.
+ *
+ * Values below 16ns get one bucket each; above that, every power of two up to
+ * 2^40ns (about 18 minutes) is split into 16 buckets, so a recorded value is off
+ * by at most 1/16 (about 6%). Longer values share the last bucket.
+ * Recordings go to one of at most 16 stripes, picked by a hash of the recording
+ * thread's id, so threads rarely share a stripe and memory does not grow with
+ * the number of threads: a stripe is one padded array of about 5 KB, so a
+ * recorder takes at most about 80 KB. The padding keeps the counters of
+ * neighbouring stripes off each other's cache lines. A recording is a few
+ * atomic adds on its stripe: no lock and no CAS loop except when it raises the max.
+ * snapshot() reads every stripe without stopping the writers; a snapshot taken
+ * under load may miss recordings that are in progress.
+ */
+final class LatencyRecorder {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Highest power of two with its own buckets
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // Power of two, about twice the core count, so a thread's id hash masks straight to a stripe
+    private static final int STRIPE_COUNT =
+            Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2);
+
+    // A stripe is [PADDING][buckets][errors, total, max][PADDING]; 16 longs span two 64-byte cache lines
+    private static final int PADDING = 16;
+    private static final int ERRORS = PADDING + BUCKET_COUNT;
+    private static final int TOTAL_NANOS = ERRORS + 1;
+    private static final int MAX_NANOS = ERRORS + 2;
+    private static final int STRIPE_LENGTH = MAX_NANOS + 1 + PADDING;
+
+    // Shared by disabled recorders; record() returns before reading the clock
+    static final LatencyRecorder DISABLED = new LatencyRecorder(false);
+
+    private final boolean enabled;
+    private final AtomicLongArray[] stripes;
+
+    LatencyRecorder() {
+        this(true);
+    }
+
+    private LatencyRecorder(boolean enabled) {
+        this.enabled = enabled;
+        this.stripes = new AtomicLongArray[enabled ? STRIPE_COUNT : 0];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new AtomicLongArray(STRIPE_LENGTH);
+        }
+    }
+
+    /**
+     * @return a start time for record(), or 0 if this recorder is disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records one call that started at startNanos and ends now.
+     * @return the end time, so the next step can be timed from it, or 0 if disabled
+     */
+    long record(long startNanos, boolean success) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        recordNanos(now - startNanos, success);
+        return now;
+    }
+
+    void recordNanos(long nanos, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        long value = Math.max(nanos, 0);
+        AtomicLongArray stripe = stripeForCurrentThread();
+        stripe.getAndIncrement(PADDING + bucketIndex(value));
+        if (!success) {
+            stripe.getAndIncrement(ERRORS);
+        }
+        stripe.getAndAdd(TOTAL_NANOS, value);
+        if (value > stripe.get(MAX_NANOS)) {
+            stripe.accumulateAndGet(MAX_NANOS, value, Math::max);
+        }
+    }
+
+    LatencySnapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long errors = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] += stripe.get(PADDING + i);
+            }
+            errors += stripe.get(ERRORS);
+            totalNanos += stripe.get(TOTAL_NANOS);
+            maxNanos = Math.max(maxNanos, stripe.get(MAX_NANOS));
+        }
+        return new LatencySnapshot(buckets, errors, totalNanos, maxNanos);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that falls into the bucket
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    // Thread ids are sequential, so mix them before masking to spread pool threads across stripes
+    private AtomicLongArray stripeForCurrentThread() {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+}
+
+/**
+ * Records latencies over a sliding window of recent intervals, for decisions
+ * that should follow current latency rather than the whole lifetime.
+ *
+ * Each interval records into its own LatencyRecorder. The first record() or
+ * snapshot() call after an interval ends swaps in a fresh recorder and keeps
+ * the old one's snapshot; only the last intervalCount snapshots are kept, and
+ * intervals without calls count as empty. snapshot() adds the kept snapshots
+ * to the current recorder's, so it covers between intervalCount and
+ * intervalCount + 1 intervals. Rotation takes a lock once per interval; a
+ * recording that races with it may be left out of the window.
+ */
+final class WindowedLatencyRecorder {
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    // Snapshots of closed intervals, a ring overwritten from nextClosed; guarded by this
+    private final LatencySnapshot[] closedIntervals;
+    private int nextClosed;
+    private volatile long nextRotationNanos;
+    private volatile LatencyRecorder current = new LatencyRecorder();
+    // Sum of closedIntervals, so snapshot() adds one snapshot rather than intervalCount
+    private volatile LatencySnapshot closedTotal = LatencySnapshot.EMPTY;
+
+    WindowedLatencyRecorder(Duration interval, int intervalCount) {
+        this(interval, intervalCount, System::nanoTime);
+    }
+
+    // nanoClock lets tests move time forward without sleeping
+    WindowedLatencyRecorder(Duration interval, int intervalCount, LongSupplier nanoClock) {
+        if (interval.isNegative() || interval.isZero() || intervalCount < 1) {
+            throw new IllegalArgumentException("interval and intervalCount must be positive, were "
+                    + interval + " and " + intervalCount);
+        }
+        this.intervalNanos = interval.toNanos();
+        this.nanoClock = nanoClock;
+        this.closedIntervals = new LatencySnapshot[intervalCount];
+        Arrays.fill(closedIntervals, LatencySnapshot.EMPTY);
+        this.nextRotationNanos = nanoClock.getAsLong() + intervalNanos;
+    }
+
+    long start() {
+        return nanoClock.getAsLong();
+    }
+
+    void record(long startNanos, boolean success) {
+        long now = nanoClock.getAsLong();
+        rotateIfDue(now);
+        current.recordNanos(now - startNanos, success);
+    }
+
+    LatencySnapshot snapshot() {
+        rotateIfDue(nanoClock.getAsLong());
+        return closedTotal.plus(current.snapshot());
+    }
+
+    private void rotateIfDue(long now) {
+        if (now - nextRotationNanos < 0) {
+            return;
+        }
+        synchronized (this) {
+            long due = nextRotationNanos;
+            if (now - due < 0) {
+                return;
+            }
+            long idleIntervals = (now - due) / intervalNanos;
+            LatencyRecorder closed = current;
+            current = new LatencyRecorder();
+            closeInterval(closed.snapshot());
+            for (long i = 0; i < Math.min(idleIntervals, closedIntervals.length); i++) {
+                closeInterval(LatencySnapshot.EMPTY);
+            }
+            LatencySnapshot total = LatencySnapshot.EMPTY;
+            for (LatencySnapshot interval : closedIntervals) {
+                total = total.plus(interval);
+            }
+            closedTotal = total;
+            nextRotationNanos = due + (idleIntervals + 1) * intervalNanos;
+        }
+    }
+
+    private void closeInterval(LatencySnapshot snapshot) {
+        closedIntervals[nextClosed] = snapshot;
+        nextClosed = (nextClosed + 1) % closedIntervals.length;
+    }
+}
+
+/**
+ * Immutable counts and latency percentiles taken from a LatencyRecorder.
+ */
+final class LatencySnapshot {
+    static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyRecorder.BUCKET_COUNT], 0, 0, 0);
+
+    private final long[] buckets;
+    private final long count;
+    private final long errorCount;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencySnapshot(long[] buckets, long errorCount, long totalNanos, long maxNanos) {
+        long bucketTotal = 0;
+        for (long bucket : buckets) {
+            bucketTotal += bucket;
+        }
+        this.buckets = buckets;
+        this.count = bucketTotal;
+        this.errorCount = errorCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() { return count; }
+    public long getErrorCount() { return errorCount; }
+    public long getTotalNanos() { return totalNanos; }
+    public long getMaxNanos() { return maxNanos; }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    // Both snapshots' recordings together, e.g. the intervals of a WindowedLatencyRecorder
+    LatencySnapshot plus(LatencySnapshot other) {
+        long[] sum = buckets.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += other.buckets[i];
+        }
+        return new LatencySnapshot(sum, errorCount + other.errorCount, totalNanos + other.totalNanos,
+                Math.max(maxNanos, other.maxNanos));
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, e.g. 99.9
+     * @return the highest latency in the bucket holding that percentile, never above the recorded max
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, was " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(LatencyRecorder.bucketUpperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    // One line per metric, e.g. for logs or a metrics endpoint
+    @Override
+    public String toString() {
+        return String.format("count=%d errors=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns max=%dns",
+                count, errorCount, getMeanNanos(), getValueAtPercentile(50), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), maxNanos);
+    }
+}
+
+// ============================================================================
+// PAYMENT METRICS
+// ============================================================================
+
+/**
+ * Recorders for each step of CardPaymentService.processPayment.
+ *
+ * An error is a card that fails validation, or a receipt that storage did not
+ * accept. Pass an instance to CardPaymentService.Builder.metrics; services
+ * built without one use DISABLED, which never reads the clock.
+ */
+final class PaymentMetrics {
+    static final PaymentMetrics DISABLED = new PaymentMetrics(
+            LatencyRecorder.DISABLED, LatencyRecorder.DISABLED, LatencyRecorder.DISABLED);
+
+    private final LatencyRecorder cardValidation;
+    private final LatencyRecorder receiptGeneration;
+    private final LatencyRecorder receiptStorage;
+
+    public PaymentMetrics() {
+        this(new LatencyRecorder(), new LatencyRecorder(), new LatencyRecorder());
+    }
+
+    private PaymentMetrics(LatencyRecorder cardValidation, LatencyRecorder receiptGeneration,
+                           LatencyRecorder receiptStorage) {
+        this.cardValidation = cardValidation;
+        this.receiptGeneration = receiptGeneration;
+        this.receiptStorage = receiptStorage;
+    }
+
+    LatencyRecorder cardValidation() { return cardValidation; }
+    LatencyRecorder receiptGeneration() { return receiptGeneration; }
+    LatencyRecorder receiptStorage() { return receiptStorage; }
+
+    boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(cardValidation.snapshot(), receiptGeneration.snapshot(), receiptStorage.snapshot());
+    }
+
+    /**
+     * Point-in-time view of all payment metrics.
+     */
+    static final class Snapshot {
+        private final LatencySnapshot cardValidation;
+        private final LatencySnapshot receiptGeneration;
+        private final LatencySnapshot receiptStorage;
+
+        private Snapshot(LatencySnapshot cardValidation, LatencySnapshot receiptGeneration,
+                         LatencySnapshot receiptStorage) {
+            this.cardValidation = cardValidation;
+            this.receiptGeneration = receiptGeneration;
+            this.receiptStorage = receiptStorage;
+        }
+
+        public LatencySnapshot getCardValidation() { return cardValidation; }
+        public LatencySnapshot getReceiptGeneration() { return receiptGeneration; }
+        public LatencySnapshot getReceiptStorage() { return receiptStorage; }
+
+        @Override
+        public String toString() {
+            return "card_validation " + cardValidation
+                    + "\nreceipt_generation " + receiptGeneration
+                    + "\nreceipt_storage " + receiptStorage;
+        }
+    }
+}
+
+// ============================================================================
+// METERED DECORATOR
+// ============================================================================
+
+/**
+ * Records every call to another S3StorageService: count, latency, and an error
+ * for each call that throws or does not store its receipt. A batch is one call,
+ * with one latency and one error if any of its receipts was not stored, so the
+ * error count never exceeds the call count.
+ */
+class MeteredS3StorageService implements S3StorageService {
+    private final S3StorageService delegate;
+    private final LatencyRecorder recorder;
+
+    public MeteredS3StorageService(S3StorageService delegate, LatencyRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        long start = recorder.start();
+        boolean stored = false;
+        try {
+            stored = delegate.storeReceipt(transactionId, receiptContent);
+            return stored;
+        } finally {
+            recorder.record(start, stored);
+        }
+    }
+
+    @Override
+    public boolean acceptsBytes() {
+        return delegate.acceptsBytes();
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        long start = recorder.start();
+        boolean stored = false;
+        try {
+            stored = delegate.storeReceipt(transactionId, receiptContent);
+            return stored;
+        } finally {
+            recorder.record(start, stored);
+        }
+    }
+
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        long start = recorder.start();
+        boolean allStored = false;
+        try {
+            List<Boolean> results = delegate.storeReceipts(receipts);
+            allStored = allStored(results);
+            return results;
+        } finally {
+            recorder.record(start, allStored);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                        Executor executor) {
+        long start = recorder.start();
+        return delegate.storeReceiptAsync(transactionId, receiptContent, executor)
+                .whenComplete((stored, error) -> recorder.record(start, Boolean.TRUE.equals(stored)));
+    }
+
+    private static boolean allStored(List<Boolean> results) {
+        for (Boolean stored : results) {
+            if (!Boolean.TRUE.equals(stored)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+// ============================================================================
+// TESTS FOR METRICS
+// ============================================================================
+
+class PaymentMetricsTest {
+    private static final String VALID_CARD = "4532123456789010";
+
+    @Test
+    void processPayment_withMetrics_recordsEachStep() {
+        // Arrange
+        PaymentMetrics metrics = new PaymentMetrics();
+        CardPaymentService service = CardPaymentService.builder(new FakeS3StorageService())
+                .metrics(metrics)
+                .build();
+
+        // Act
+        service.processPayment(VALID_CARD, 10.00);
+        service.processPayment("123", 10.00);
+
+        // Assert
+        PaymentMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getCardValidation().getCount());
+        assertEquals(1, snapshot.getCardValidation().getErrorCount(), "Expected the short card to count as an error");
+        assertEquals(1, snapshot.getReceiptGeneration().getCount());
+        assertEquals(1, snapshot.getReceiptStorage().getCount());
+    }
+
+    @Test
+    void storeReceipt_storageRejectsReceipt_countsError() {
+        // Arrange
+        LatencyRecorder recorder = new LatencyRecorder();
+        MeteredS3StorageService metered = new MeteredS3StorageService(new FakeS3StorageService(), recorder);
+
+        // Act
+        metered.storeReceipt("TXN-1", "receipt");
+        metered.storeReceipt("TXN-2", (String) null);
+
+        // Assert
+        LatencySnapshot snapshot = recorder.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount());
+    }
+
+    @Test
+    void storeReceipts_batchWithRejectedReceipts_countsOneErrorForTheBatch() {
+        // Arrange
+        LatencyRecorder recorder = new LatencyRecorder();
+        MeteredS3StorageService metered = new MeteredS3StorageService(new FakeS3StorageService(), recorder);
+
+        // Act
+        metered.storeReceipts(List.of(new Receipt("TXN-1", "receipt"), new Receipt("TXN-2", null),
+                new Receipt(null, "receipt")));
+        metered.storeReceipts(List.of(new Receipt("TXN-3", "receipt")));
+
+        // Assert
+        LatencySnapshot snapshot = recorder.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount(), "Expected one error for the batch with rejected receipts");
+    }
+
+    @Test
+    void snapshot_latencyBeyondTrackedRange_reportsItAsMax() {
+        // Arrange
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        // Act
+        recorder.recordNanos(Long.MAX_VALUE, true);
+
+        // Assert
+        LatencySnapshot snapshot = recorder.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void snapshot_recordingsFromManyThreads_sumsAllThreads() {
+        // Arrange
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        // Act
+        IntStream.range(0, 4_000).parallel().forEach(i -> recorder.recordNanos(1_000, true));
+
+        // Assert
+        assertEquals(4_000, recorder.snapshot().getCount());
+    }
+
+    @Test
+    void snapshot_knownLatencies_reportsCountErrorsMeanAndMax() {
+        // Arrange
+        LatencyRecorder recorder = recorderWithLatencies();
+
+        // Act
+        LatencySnapshot snapshot = recorder.snapshot();
+
+        // Assert
+        assertEquals(4, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount());
+        assertEquals(2_500.0, snapshot.getMeanNanos());
+        assertEquals(4_000, snapshot.getMaxNanos());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"25, 1000", "50, 2000", "75, 3000", "100, 4000"})
+    void getValueAtPercentile_knownLatencies_isWithinBucketPrecision(double percentile, long expectedNanos) {
+        // Arrange
+        LatencySnapshot snapshot = recorderWithLatencies().snapshot();
+
+        // Act
+        long value = snapshot.getValueAtPercentile(percentile);
+
+        // Assert: 1/16 relative precision
+        assertEquals(expectedNanos, value, expectedNanos / 16.0);
+    }
+
+    @Test
+    void getValueAtPercentile_nothingRecorded_returnsZero() {
+        // Act
+        long value = new LatencyRecorder().snapshot().getValueAtPercentile(99);
+
+        // Assert
+        assertEquals(0, value);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {-1, 100.1})
+    void getValueAtPercentile_outOfRange_throwsIllegalArgumentException(double percentile) {
+        // Arrange
+        LatencySnapshot snapshot = recorderWithLatencies().snapshot();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(percentile));
+    }
+
+    @Test
+    void snapshot_windowedRecordingsOlderThanWindow_areDropped() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        WindowedLatencyRecorder recorder = new WindowedLatencyRecorder(Duration.ofSeconds(1), 2, now::get);
+        recordWindowed(recorder, now, 5_000_000);
+        now.addAndGet(Duration.ofSeconds(3).toNanos());
+
+        // Act
+        recordWindowed(recorder, now, 1_000);
+        LatencySnapshot snapshot = recorder.snapshot();
+
+        // Assert
+        assertEquals(1, snapshot.getCount(), "Expected only the recent call in the window");
+        assertEquals(1_000, snapshot.getMaxNanos());
+    }
+
+    @Test
+    void snapshot_windowedRecordingsWithinWindow_areKeptAcrossRotations() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        WindowedLatencyRecorder recorder = new WindowedLatencyRecorder(Duration.ofSeconds(1), 2, now::get);
+        recordWindowed(recorder, now, 5_000_000);
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        // Act
+        recordWindowed(recorder, now, 1_000);
+        LatencySnapshot snapshot = recorder.snapshot();
+
+        // Assert
+        assertEquals(2, snapshot.getCount());
+        assertEquals(5_000_000, snapshot.getMaxNanos());
+    }
+
+    // Records one call that took nanos, moving the clock forward by that much
+    private static void recordWindowed(WindowedLatencyRecorder recorder, AtomicLong now, long nanos) {
+        long start = recorder.start();
+        now.addAndGet(nanos);
+        recorder.record(start, true);
+    }
+
+    // 1, 2, 3 and 4 microseconds, the 3 microsecond call failed
+    private static LatencyRecorder recorderWithLatencies() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.recordNanos(1_000, true);
+        recorder.recordNanos(2_000, true);
+        recorder.recordNanos(3_000, false);
+        recorder.recordNanos(4_000, true);
+        return recorder;
+    }
+}
@@ -0,0 +1,428 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating CardPaymentService as a reactive Flow.Processor with backpressure.
+ *
+ * Key Points:
+ * 1. PaymentFlowProcessor turns a Flow of PaymentRequest into a Flow of PaymentResult
+ * 2. It requests at most maxInFlight payments from upstream, and one more per finished payment
+ * 3. Slow storage therefore slows the upstream producer instead of filling a queue
+ * 4. Results are published through SubmissionPublisher, which blocks when subscribers fall behind
+ */
+
+// ============================================================================
+// REACTIVE PAYMENT PROCESSOR
+// ============================================================================
+
+/**
+ * Outcome of one payment processed through PaymentFlowProcessor.
+ */
+final class PaymentResult {
+    private final PaymentRequest request;
+    private final String transactionId;
+
+    public PaymentResult(PaymentRequest request, String transactionId) {
+        this.request = request;
+        this.transactionId = transactionId;
+    }
+
+    public PaymentRequest getRequest() { return request; }
+    // null if the payment failed
+    public String getTransactionId() { return transactionId; }
+    public boolean isSucceeded() { return transactionId != null; }
+}
+
+/**
+ * Flow.Processor that runs each PaymentRequest through CardPaymentService.processPaymentAsync.
+ *
+ * Demand is driven by storage: the processor asks upstream for maxInFlight
+ * payments and asks for one more only when a payment's receipt write has
+ * finished and its result has been handed to subscribers. submit() blocks
+ * while a subscriber's buffer is full, so a slow subscriber holds back
+ * storage completions, and with them upstream demand, the same way.
+ *
+ * Results are published in completion order, not request order; each result
+ * carries its request. Upstream completion or error is passed on once every
+ * in-flight payment has been published.
+ *
+ * Once every downstream subscriber has cancelled, or the processor has been
+ * closed, the upstream subscription is cancelled: no further payments are
+ * requested or started, and the processor closes when the in-flight ones finish.
+ * If a payment cannot even be started, e.g. because the storage executor
+ * rejects it, upstream is cancelled the same way and the processor closes
+ * exceptionally with that error; onNext itself never throws.
+ */
+class PaymentFlowProcessor extends SubmissionPublisher<PaymentResult>
+        implements Flow.Processor<PaymentRequest, PaymentResult> {
+    private final CardPaymentService service;
+    private final int maxInFlight;
+    private final Executor storageExecutor;
+    // In-flight payments, plus one while upstream is still open
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger downstreamSubscribers = new AtomicInteger();
+    private final AtomicBoolean upstreamFinished = new AtomicBoolean();
+    private volatile Flow.Subscription upstream;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+
+    public PaymentFlowProcessor(CardPaymentService service, int maxInFlight, Executor storageExecutor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+        }
+        this.service = service;
+        this.maxInFlight = maxInFlight;
+        this.storageExecutor = storageExecutor;
+    }
+
+    // Wraps each subscriber so that its cancel() can be passed upstream
+    @Override
+    public void subscribe(Flow.Subscriber<? super PaymentResult> subscriber) {
+        downstreamSubscribers.incrementAndGet();
+        super.subscribe(new CancelForwardingSubscriber(subscriber));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        // Checked after publishing upstream, so a concurrent cancelUpstream() sees one or the other
+        if (cancelled) {
+            subscription.cancel();
+        } else {
+            subscription.request(maxInFlight);
+        }
+    }
+
+    @Override
+    public void onNext(PaymentRequest request) {
+        if (cancelled || isClosed()) {
+            cancelUpstream();
+            return;
+        }
+        pending.incrementAndGet();
+        CompletableFuture<String> payment;
+        try {
+            payment = service.processPaymentAsync(request.getCardNumber(), request.getAmount(), storageExecutor);
+        } catch (RuntimeException e) {
+            // E.g. RejectedExecutionException from a shut-down storage executor. onNext must not throw,
+            // so stop upstream and close with the error once in-flight payments finish
+            cancelUpstream(e);
+            finishOne();
+            return;
+        }
+        payment.handle((transactionId, error) -> error == null ? transactionId : null)
+                .thenAccept(transactionId -> {
+                    try {
+                        submit(new PaymentResult(request, transactionId));
+                        if (!cancelled) {
+                            upstream.request(1);
+                        }
+                    } catch (RuntimeException e) {
+                        // Closed while the payment was in flight; stop instead of stalling without demand
+                        cancelUpstream();
+                    } finally {
+                        finishOne();
+                    }
+                });
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        finishUpstream(error);
+    }
+
+    @Override
+    public void onComplete() {
+        finishUpstream(null);
+    }
+
+    private void cancelUpstream() {
+        cancelUpstream(null);
+    }
+
+    // A non-null error closes the processor exceptionally, unless upstream had already finished
+    private void cancelUpstream(Throwable error) {
+        cancelled = true;
+        finishUpstream(error);
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    // Releases upstream's share of pending once, whether upstream completed, failed or was cancelled
+    private void finishUpstream(Throwable error) {
+        if (upstreamFinished.compareAndSet(false, true)) {
+            upstreamError = error;
+            finishOne();
+        }
+    }
+
+    private void finishOne() {
+        if (pending.decrementAndGet() == 0) {
+            Throwable error = upstreamError;
+            if (error == null) {
+                close();
+            } else {
+                closeExceptionally(error);
+            }
+        }
+    }
+
+    private final class CancelForwardingSubscriber implements Flow.Subscriber<PaymentResult> {
+        private final Flow.Subscriber<? super PaymentResult> downstream;
+
+        private CancelForwardingSubscriber(Flow.Subscriber<? super PaymentResult> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            AtomicBoolean subscriptionCancelled = new AtomicBoolean();
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    if (subscriptionCancelled.compareAndSet(false, true)
+                            && downstreamSubscribers.decrementAndGet() == 0) {
+                        cancelUpstream();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onNext(PaymentResult result) {
+            downstream.onNext(result);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            downstream.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING REACTIVE PROCESSING
+// ============================================================================
+
+class ReactivePaymentProcessingTest {
+    private static final String VALID_CARD = "4532123456789010";
+    private static final String INVALID_CARD = "123";
+
+    @Test
+    void processor_upstreamPublishesPayments_publishesResultForEachAndCompletes() throws Exception {
+        // Arrange
+        ExecutorService storageExecutor = Executors.newFixedThreadPool(2);
+        PaymentFlowProcessor flow = CardPaymentService.builder(new ConcurrentFakeS3StorageService()).build()
+                .asFlowProcessor(4, storageExecutor);
+        List<PaymentResult> results = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = flow.consume(results::add);
+
+        try (SubmissionPublisher<PaymentRequest> upstream = new SubmissionPublisher<>()) {
+            upstream.subscribe(flow);
+
+            // Act
+            upstream.submit(new PaymentRequest(VALID_CARD, 10.00));
+            upstream.submit(new PaymentRequest(VALID_CARD, 20.00));
+            upstream.submit(new PaymentRequest(INVALID_CARD, 30.00));
+            upstream.submit(new PaymentRequest(VALID_CARD, 40.00));
+            upstream.submit(new PaymentRequest(VALID_CARD, 50.00));
+        } finally {
+            done.get(10, TimeUnit.SECONDS);
+            storageExecutor.shutdown();
+        }
+
+        // Assert
+        assertEquals(5, results.size());
+        assertEquals(4, results.stream().filter(PaymentResult::isSucceeded).count());
+    }
+
+    @Test
+    void processor_storageStalled_requestsNoMoreThanMaxInFlight() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService storageExecutor = Executors.newCachedThreadPool();
+        PaymentFlowProcessor flow = CardPaymentService.builder(new GatedS3StorageService(release)).build()
+                .asFlowProcessor(4, storageExecutor);
+        CompletableFuture<Void> done = flow.consume(result -> { });
+        RecordingSubscription upstream = new RecordingSubscription();
+
+        try {
+            // Act
+            flow.onSubscribe(upstream);
+            flow.onNext(new PaymentRequest(VALID_CARD, 10.00));
+            flow.onNext(new PaymentRequest(VALID_CARD, 20.00));
+            flow.onNext(new PaymentRequest(VALID_CARD, 30.00));
+            flow.onNext(new PaymentRequest(VALID_CARD, 40.00));
+            long requestedWhileStalled = upstream.requested.get();
+            release.countDown();
+            flow.onComplete();
+            done.get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertEquals(4, requestedWhileStalled, "Expected no demand beyond maxInFlight while storage is stalled");
+            assertEquals(8, upstream.requested.get(), "Expected one more request per finished payment");
+        } finally {
+            release.countDown();
+            storageExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void processor_everySubscriberCancels_cancelsUpstreamAndCloses() throws Exception {
+        // Arrange
+        ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+        PaymentFlowProcessor flow = CardPaymentService.builder(new ConcurrentFakeS3StorageService()).build()
+                .asFlowProcessor(4, storageExecutor);
+        RecordingSubscription upstream = new RecordingSubscription();
+        flow.onSubscribe(upstream);
+
+        try {
+            // Act
+            flow.subscribe(new CancellingSubscriber());
+
+            // Assert
+            assertTrue(upstream.cancelled.await(10, TimeUnit.SECONDS), "Expected downstream cancel to reach upstream");
+            assertTrue(flow.isClosed());
+        } finally {
+            storageExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void processor_closedWhilePaymentInFlight_cancelsUpstreamInsteadOfStalling() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+        PaymentFlowProcessor flow = CardPaymentService.builder(new GatedS3StorageService(release)).build()
+                .asFlowProcessor(4, storageExecutor);
+        RecordingSubscription upstream = new RecordingSubscription();
+        flow.onSubscribe(upstream);
+        flow.onNext(new PaymentRequest(VALID_CARD, 10.00));
+
+        try {
+            // Act
+            flow.close();
+            release.countDown();
+
+            // Assert
+            assertTrue(upstream.cancelled.await(10, TimeUnit.SECONDS),
+                    "Expected the closed processor to cancel upstream");
+            assertEquals(4, upstream.requested.get(), "Expected no further demand after close");
+        } finally {
+            release.countDown();
+            storageExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void processor_storageExecutorRejectsPayment_cancelsUpstreamAndClosesExceptionally() throws Exception {
+        // Arrange
+        ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+        storageExecutor.shutdown();
+        PaymentFlowProcessor flow = CardPaymentService.builder((transactionId, receiptContent) -> true).build()
+                .asFlowProcessor(4, storageExecutor);
+        CompletableFuture<Void> done = flow.consume(result -> { });
+        RecordingSubscription upstream = new RecordingSubscription();
+        flow.onSubscribe(upstream);
+
+        // Act
+        assertDoesNotThrow(() -> flow.onNext(new PaymentRequest(VALID_CARD, 10.00)));
+
+        // Assert
+        assertTrue(upstream.cancelled.await(10, TimeUnit.SECONDS), "Expected upstream to be cancelled");
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> done.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        assertEquals(4, upstream.requested.get(), "Expected no further demand after the rejection");
+    }
+
+    // Upstream stand-in that records demand and cancellation
+    private static class RecordingSubscription implements Flow.Subscription {
+        private final AtomicLong requested = new AtomicLong();
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+    }
+
+    // Cancels as soon as it is subscribed
+    private static class CancellingSubscriber implements Flow.Subscriber<PaymentResult> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(PaymentResult result) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    // Blocks every write until released; relies on the default storeReceiptAsync
+    private static class GatedS3StorageService implements S3StorageService {
+        private final CountDownLatch release;
+
+        GatedS3StorageService(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
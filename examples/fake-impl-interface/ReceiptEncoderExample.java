@@ -0,0 +1,257 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating allocation-free receipt rendering for CardPaymentProcessor.
+ *
+ * Key Points:
+ * 1. ReceiptEncoder writes receipts into a reusable per-thread buffer instead of String.format
+ * 2. Output matches the original String.format receipt exactly, including rounding
+ * 3. encode() writes UTF-8 straight into a reusable or caller-supplied ByteBuffer
+ * 4. Tests compare against String.format, so the format contract is pinned down
+ */
+
+// ============================================================================
+// RECEIPT ENCODER
+// ============================================================================
+
+/**
+ * Renders receipts in the format
+ * "Transaction: %s\nCard: ****-%s\nAmount: $%.2f" without parsing a format
+ * pattern or building temporary strings.
+ *
+ * Amounts are rounded the way Formatter does it: half-up on the shortest
+ * decimal form of the double, so 1.005 renders as "1.01". Amounts that sit
+ * within rounding error of a half cent, negative amounts (including -0.0),
+ * very large or non-finite amounts, and default locales that don't format as
+ * ASCII digits with a '.' separator all fall back to String.format, so output
+ * is always identical to the original.
+ *
+ * Instances are not thread-safe; use forCurrentThread().
+ */
+final class ReceiptEncoder {
+    private static final ThreadLocal<ReceiptEncoder> PER_THREAD = ThreadLocal.withInitial(ReceiptEncoder::new);
+
+    private static final String RECEIPT_FORMAT = "Transaction: %s\nCard: ****-%s\nAmount: $%.2f";
+    private static final String TRANSACTION_LABEL = "Transaction: ";
+    private static final String CARD_LABEL = "\nCard: ****-";
+    private static final String AMOUNT_LABEL = "\nAmount: $";
+    // Above this, amount * 100 loses too much precision to tell which way a half cent rounds
+    private static final double MAX_FAST_PATH_AMOUNT = 1e7;
+    private static final double HALF_CENT_TOLERANCE = 1e-5;
+    private static final int INITIAL_BYTES = 256;
+
+    private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+    private char[] chars = new char[128];
+    // View of chars for the encoder, replaced whenever chars grows
+    private CharBuffer charView = CharBuffer.wrap(chars);
+    // Allocated by the first encode() without a buffer, so threads that only render() never hold direct memory
+    private ByteBuffer bytes;
+    private Locale checkedLocale;
+    private boolean localeFormatsPlainAscii;
+
+    private ReceiptEncoder() {
+    }
+
+    static ReceiptEncoder forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    String render(String transactionId, String cardNumber, double amount) {
+        int length = fill(transactionId, cardNumber, amount);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Writes the receipt as UTF-8 at the buffer's position.
+     * @return number of bytes written
+     * @throws BufferOverflowException if the receipt does not fit; the buffer position is left unchanged
+     */
+    int encode(String transactionId, String cardNumber, double amount, ByteBuffer out) {
+        int length = fill(transactionId, cardNumber, amount);
+        int start = out.position();
+        utf8.reset();
+        charView.clear().limit(length);
+        CoderResult result = utf8.encode(charView, out, true);
+        if (result.isOverflow()) {
+            out.position(start);
+            throw new BufferOverflowException();
+        }
+        utf8.flush(out);
+        return out.position() - start;
+    }
+
+    /**
+     * Encodes the receipt as UTF-8 into this thread's reusable direct buffer.
+     * @return the buffer, positioned at the receipt; valid until the next encode on this thread
+     */
+    ByteBuffer encode(String transactionId, String cardNumber, double amount) {
+        if (bytes == null) {
+            bytes = ByteBuffer.allocateDirect(INITIAL_BYTES);
+        }
+        while (true) {
+            bytes.clear();
+            try {
+                encode(transactionId, cardNumber, amount, bytes);
+                return bytes.flip();
+            } catch (BufferOverflowException e) {
+                bytes = ByteBuffer.allocateDirect(bytes.capacity() * 2);
+            }
+        }
+    }
+
+    private int fill(String transactionId, String cardNumber, double amount) {
+        int cardLength = cardNumber.length();
+        long cents = toCents(amount);
+        if (cents < 0) {
+            String lastFour = cardNumber.substring(cardLength - 4);
+            String formatted = String.format(RECEIPT_FORMAT, transactionId, lastFour, amount);
+            ensureCapacity(formatted.length());
+            formatted.getChars(0, formatted.length(), chars, 0);
+            return formatted.length();
+        }
+
+        String id = String.valueOf(transactionId);
+        ensureCapacity(TRANSACTION_LABEL.length() + id.length() + CARD_LABEL.length() + 4
+                + AMOUNT_LABEL.length() + 20);
+        int pos = append(TRANSACTION_LABEL, 0);
+        pos = append(id, pos);
+        pos = append(CARD_LABEL, pos);
+        cardNumber.getChars(cardLength - 4, cardLength, chars, pos);
+        pos += 4;
+        pos = append(AMOUNT_LABEL, pos);
+        pos = appendDigits(cents / 100, pos);
+        chars[pos++] = '.';
+        chars[pos++] = (char) ('0' + (cents % 100) / 10);
+        chars[pos++] = (char) ('0' + cents % 10);
+        return pos;
+    }
+
+    // Returns the amount in whole cents, or -1 when only String.format can round it exactly.
+    // Double.compare keeps -0.0 off the fast path, since String.format renders it as "-0.00".
+    private long toCents(double amount) {
+        boolean inFastPathRange = Double.compare(amount, 0.0) >= 0 && amount < MAX_FAST_PATH_AMOUNT;
+        if (!inFastPathRange || !defaultLocaleFormatsPlainAscii()) {
+            return -1;
+        }
+        double scaled = amount * 100;
+        double wholeCents = Math.floor(scaled);
+        if (Math.abs(scaled - wholeCents - 0.5) < HALF_CENT_TOLERANCE) {
+            return -1;
+        }
+        return (long) Math.floor(scaled + 0.5);
+    }
+
+    private boolean defaultLocaleFormatsPlainAscii() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        if (locale != checkedLocale) {
+            localeFormatsPlainAscii = String.format(locale, "%.2f", 1234.5).equals("1234.50");
+            checkedLocale = locale;
+        }
+        return localeFormatsPlainAscii;
+    }
+
+    private int append(String value, int pos) {
+        value.getChars(0, value.length(), chars, pos);
+        return pos + value.length();
+    }
+
+    private int appendDigits(long value, int pos) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private void ensureCapacity(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charView = CharBuffer.wrap(chars);
+        }
+    }
+}
+
+// ============================================================================
+// TESTS FOR RECEIPT ENCODER
+// ============================================================================
+
+class ReceiptEncoderTest {
+    private static final String CARD = "4532123456789010";
+
+    @Test
+    void render_typicalAmount_matchesStringFormatReceipt() {
+        // Act
+        String receipt = ReceiptEncoder.forCurrentThread().render("TXN-1", CARD, 99.99);
+
+        // Assert
+        assertEquals("Transaction: TXN-1\nCard: ****-9010\nAmount: $99.99", receipt);
+    }
+
+    @Test
+    void render_halfCentAmounts_roundHalfUpLikeStringFormat() {
+        // Act & Assert
+        assertMatchesStringFormat(1.005);
+        assertMatchesStringFormat(0.125);
+        assertMatchesStringFormat(2.675);
+        assertMatchesStringFormat(0.995);
+    }
+
+    @Test
+    void render_wholeLargeAndTinyAmounts_matchStringFormat() {
+        // Act & Assert
+        assertMatchesStringFormat(100.0);
+        assertMatchesStringFormat(0.001);
+        assertMatchesStringFormat(9_999_999.99);
+        assertMatchesStringFormat(123_456_789.785);
+        assertMatchesStringFormat(Double.NaN);
+        assertMatchesStringFormat(-0.0);
+    }
+
+    @Test
+    void encode_receiptFitsBuffer_writesUtf8BytesOfRenderedReceipt() {
+        // Arrange
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        String expected = ReceiptEncoder.forCurrentThread().render("TXN-1", CARD, 42.50);
+
+        // Act
+        int written = ReceiptEncoder.forCurrentThread().encode("TXN-1", CARD, 42.50, buffer);
+
+        // Assert
+        buffer.flip();
+        assertEquals(expected, StandardCharsets.UTF_8.decode(buffer).toString());
+        assertEquals(expected.length(), written);
+    }
+
+    @Test
+    void encode_bufferTooSmall_throwsAndLeavesPositionUnchanged() {
+        // Arrange
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+
+        // Act & Assert
+        assertThrows(BufferOverflowException.class,
+                () -> ReceiptEncoder.forCurrentThread().encode("TXN-1", CARD, 42.50, buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    private static void assertMatchesStringFormat(double amount) {
+        String expected = String.format("Transaction: %s\nCard: %s\nAmount: $%.2f", "TXN-1", "****-9010", amount);
+        assertEquals(expected, ReceiptEncoder.forCurrentThread().render("TXN-1", CARD, amount),
+                "Receipt for amount " + amount + " differs from String.format");
+    }
+}
@@ -0,0 +1,191 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating streaming and bulk export of stored receipts for end-of-run verification.
+ *
+ * Key Points:
+ * 1. receipts() streams what a fake holds without copying its map
+ * 2. The stream knows its size and splits, so reconciliation can run in parallel
+ * 3. ReceiptExporter writes any receipt stream to a file channel in large chunks
+ * 4. The export uses the same record layout as MappedFileS3StorageService segments
+ */
+
+// ============================================================================
+// RECEIPT EXPORT
+// ============================================================================
+
+/**
+ * Writes receipts to a channel as [int idLength][int contentLength][id UTF-8][content UTF-8]
+ * records, encoding straight into one reusable direct buffer.
+ */
+final class ReceiptExporter {
+    static final int CHUNK_BYTES = 1 << 16;
+    private static final int RECORD_HEADER_BYTES = MappedFileS3StorageService.RECORD_HEADER_BYTES;
+
+    private ReceiptExporter() {
+    }
+
+    /**
+     * @return number of bytes written to the channel
+     */
+    static long exportTo(Stream<Receipt> receipts, WritableByteChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+        long written = 0;
+        Iterator<Receipt> iterator = receipts.iterator();
+        while (iterator.hasNext()) {
+            Receipt receipt = iterator.next();
+            if (appendRecord(receipt, chunk, utf8)) {
+                continue;
+            }
+            written += writeFully(chunk, channel);
+            if (!appendRecord(receipt, chunk, utf8)) {
+                // Larger than a whole chunk: encode this one record on its own
+                int maxBytes = RECORD_HEADER_BYTES
+                        + 3 * (receipt.getTransactionId().length() + receipt.getContent().length());
+                ByteBuffer large = ByteBuffer.allocate(maxBytes);
+                appendRecord(receipt, large, utf8);
+                written += writeFully(large, channel);
+            }
+        }
+        return written + writeFully(chunk, channel);
+    }
+
+    // Leaves the buffer unchanged and returns false if the record does not fit
+    private static boolean appendRecord(Receipt receipt, ByteBuffer buffer, CharsetEncoder utf8) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_BYTES) {
+            return false;
+        }
+        buffer.position(start + RECORD_HEADER_BYTES);
+        int idLength = encode(receipt.getTransactionId(), buffer, utf8);
+        int contentLength = idLength < 0 ? -1 : encode(receipt.getContent(), buffer, utf8);
+        if (contentLength < 0) {
+            buffer.position(start);
+            return false;
+        }
+        buffer.putInt(start, idLength);
+        buffer.putInt(start + Integer.BYTES, contentLength);
+        return true;
+    }
+
+    // Returns the encoded length, or -1 if the buffer ran out of space
+    private static int encode(String value, ByteBuffer buffer, CharsetEncoder utf8) {
+        int start = buffer.position();
+        utf8.reset();
+        if (utf8.encode(CharBuffer.wrap(value), buffer, true).isOverflow() || utf8.flush(buffer).isOverflow()) {
+            return -1;
+        }
+        return buffer.position() - start;
+    }
+
+    private static long writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+}
+
+// ============================================================================
+// TESTS FOR STREAMING AND EXPORT
+// ============================================================================
+
+class ReceiptExportTest {
+    private FakeS3StorageService fakeS3;
+
+    @TempDir
+    Path exportDirectory;
+
+    @BeforeEach
+    void setUp() {
+        fakeS3 = new FakeS3StorageService();
+        fakeS3.storeReceipt("TXN-1", "Receipt 1");
+        fakeS3.storeReceipt("TXN-2", "Receipt 2");
+    }
+
+    @Test
+    void receipts_restoredFakeWithOverwrite_streamsEachReceiptOnceWithLatestContent() {
+        // Arrange
+        FakeS3StorageService restored = new FakeS3StorageService();
+        restored.restore(fakeS3.snapshot());
+        restored.storeReceipt("TXN-2", "Corrected 2");
+        restored.storeReceipt("TXN-3", "Receipt 3");
+
+        // Act
+        Set<String> contents = restored.receipts().parallel()
+                .map(Receipt::getContent)
+                .collect(Collectors.toSet());
+
+        // Assert
+        assertEquals(Set.of("Receipt 1", "Corrected 2", "Receipt 3"), contents);
+    }
+
+    @Test
+    void receipts_noOverwrites_reportsExactSize() {
+        // Act
+        long estimatedSize = fakeS3.receipts().spliterator().estimateSize();
+
+        // Assert
+        assertEquals(2, estimatedSize);
+    }
+
+    @Test
+    void exportTo_fileChannel_writesLengthPrefixedRecords() throws IOException {
+        // Arrange
+        Path exportFile = exportDirectory.resolve("receipts.bin");
+
+        // Act
+        long written;
+        try (FileChannel channel = FileChannel.open(exportFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            written = ReceiptExporter.exportTo(fakeS3.receipts(), channel);
+        }
+
+        // Assert: two records of 8 header bytes + 5 ID bytes + 9 content bytes
+        assertEquals(2 * (8 + 5 + 9), written);
+        ByteBuffer exported = ByteBuffer.wrap(Files.readAllBytes(exportFile));
+        assertEquals(5, exported.getInt(0), "Expected first record to start with the ID length");
+        assertEquals(9, exported.getInt(4), "Expected the content length after the ID length");
+    }
+
+    @Test
+    void exportTo_receiptLargerThanChunk_writesWholeRecord() throws IOException {
+        // Arrange
+        String largeContent = "x".repeat(ReceiptExporter.CHUNK_BYTES * 2);
+        Path exportFile = exportDirectory.resolve("large.bin");
+
+        // Act
+        long written;
+        try (FileChannel channel = FileChannel.open(exportFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            written = ReceiptExporter.exportTo(Stream.of(new Receipt("TXN-1", largeContent)), channel);
+        }
+
+        // Assert
+        assertEquals(8 + 5 + largeContent.length(), written);
+        assertEquals(written, Files.size(exportFile));
+    }
+}
@@ -0,0 +1,646 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating retries, hedged requests and circuit breaking in front of S3StorageService.
+ *
+ * Key Points:
+ * 1. Failed writes are retried with jittered exponential backoff
+ * 2. A write slower than a latency percentile gets a hedged second request
+ * 3. A retry budget caps retries and hedges to a share of normal traffic
+ * 4. A lock-free circuit breaker stops calling a store that keeps failing
+ */
+
+// ============================================================================
+// RETRY BUDGET
+// ============================================================================
+
+/**
+ * Token bucket that limits retries and hedges to a share of first attempts.
+ *
+ * Every call deposits retryRatio tokens and every retry or hedge withdraws one,
+ * so over time at most retryRatio extra requests are sent per call. The bucket
+ * starts full and holds at most maxBurst tokens, which allows short bursts of
+ * retries after a quiet period.
+ */
+final class RetryBudget {
+    private static final long MILLIS_PER_TOKEN = 1_000;
+
+    private final long depositMillis;
+    private final long capacityMillis;
+    private final AtomicLong balanceMillis;
+
+    public RetryBudget(double retryRatio, int maxBurst) {
+        if (retryRatio < 0 || maxBurst < 0) {
+            throw new IllegalArgumentException("retryRatio and maxBurst must not be negative, were "
+                    + retryRatio + " and " + maxBurst);
+        }
+        this.depositMillis = Math.round(retryRatio * MILLIS_PER_TOKEN);
+        this.capacityMillis = maxBurst * MILLIS_PER_TOKEN;
+        this.balanceMillis = new AtomicLong(capacityMillis);
+    }
+
+    void deposit() {
+        if (depositMillis > 0) {
+            balanceMillis.getAndUpdate(balance -> Math.min(capacityMillis, balance + depositMillis));
+        }
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long balance = balanceMillis.get();
+            if (balance < MILLIS_PER_TOKEN) {
+                return false;
+            }
+            if (balanceMillis.compareAndSet(balance, balance - MILLIS_PER_TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
+
+// ============================================================================
+// CIRCUIT BREAKER
+// ============================================================================
+
+/**
+ * Opens after a run of consecutive failures and lets one probe through per open period.
+ *
+ * The whole state is one AtomicLong: CLOSED, or the clock time at which the
+ * next probe may go out. The caller that wins the CAS for an expired open
+ * period sends the probe and pushes the time forward, so other callers stay
+ * rejected until the probe succeeds and closes the breaker.
+ */
+final class CircuitBreaker {
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong state = new AtomicLong(CLOSED);
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    // nanoClock lets tests move time forward without sleeping
+    public CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1, was " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    boolean allowRequest() {
+        long current = state.get();
+        if (current == CLOSED) {
+            return true;
+        }
+        long now = nanoClock.getAsLong();
+        return now - current >= 0 && state.compareAndSet(current, now + openNanos);
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() != CLOSED) {
+            state.set(CLOSED);
+        }
+    }
+
+    void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            state.compareAndSet(CLOSED, nanoClock.getAsLong() + openNanos);
+        }
+    }
+
+    public boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+}
+
+// ============================================================================
+// RESILIENT DECORATOR
+// ============================================================================
+
+/**
+ * Retries, hedges and circuit-breaks calls to another S3StorageService.
+ *
+ * A call is retried when the delegate returns false or throws, up to
+ * maxAttempts, sleeping a random time between zero and an exponentially growing
+ * cap (full jitter) between attempts. With hedging on, an attempt that has not
+ * finished after the hedge percentile of recent attempt latencies gets a second
+ * request, and the first success wins. Only the last 10 to 11 seconds of
+ * attempts count, so the hedge delay follows the delegate as it speeds up or
+ * slows down instead of averaging over the service's whole lifetime. Retries and hedges both draw on the
+ * retry budget, and nothing is sent while the circuit breaker is open.
+ *
+ * Hedging sends the same receipt twice, which is safe because storing a
+ * transaction ID again replaces it with identical content. The two requests
+ * run at the same time on the hedge executor, so with hedging on the delegate
+ * must be thread-safe, e.g. ConcurrentFakeS3StorageService rather than
+ * FakeS3StorageService.
+ *
+ * storeReceipts retries only the receipts that failed, through the same budget
+ * and breaker. Batches are never hedged: a batch's latency says little about
+ * the latency percentile of single writes.
+ */
+class ResilientS3StorageService implements S3StorageService {
+    // Hedge only once the percentile is based on enough attempts to mean something
+    private static final int MIN_HEDGE_SAMPLES = 100;
+    private static final long HEDGE_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int HEDGE_WINDOW_INTERVALS = 10;
+    private static final long NO_HEDGE = -1;
+
+    private final S3StorageService delegate;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final RetryBudget retryBudget;
+    private final CircuitBreaker circuitBreaker;
+    private final double hedgePercentile;
+    private final Executor hedgeExecutor;
+    private final WindowedLatencyRecorder attemptLatency =
+            new WindowedLatencyRecorder(Duration.ofNanos(HEDGE_REFRESH_NANOS), HEDGE_WINDOW_INTERVALS);
+    private final AtomicLong nextHedgeRefreshNanos = new AtomicLong();
+    private volatile long hedgeDelayNanos = NO_HEDGE;
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+
+    public ResilientS3StorageService(S3StorageService delegate, int maxAttempts, Duration baseBackoff,
+                                     Duration maxBackoff, RetryBudget retryBudget, CircuitBreaker circuitBreaker) {
+        this(delegate, maxAttempts, baseBackoff, maxBackoff, retryBudget, circuitBreaker, 0, null);
+    }
+
+    /**
+     * @param hedgePercentile Attempt latency percentile after which to send a hedge, e.g. 95; 0 disables hedging
+     * @param hedgeExecutor Executor that runs attempts so the caller can wait for whichever finishes first;
+     *                      hedged attempts overlap, so the delegate must be thread-safe
+     */
+    public ResilientS3StorageService(S3StorageService delegate, int maxAttempts, Duration baseBackoff,
+                                     Duration maxBackoff, RetryBudget retryBudget, CircuitBreaker circuitBreaker,
+                                     double hedgePercentile, Executor hedgeExecutor) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1, was " + maxAttempts);
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 100 || (hedgePercentile > 0 && hedgeExecutor == null)) {
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 100) and needs an executor, was "
+                    + hedgePercentile);
+        }
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.retryBudget = retryBudget;
+        this.circuitBreaker = circuitBreaker;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeExecutor = hedgeExecutor;
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        if (hedgePercentile > 0) {
+            return storeReceiptAsync(transactionId, receiptContent, hedgeExecutor).join();
+        }
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                rejectedByBreaker.incrementAndGet();
+                return false;
+            }
+            boolean stored = attempt(() -> delegate.storeReceipt(transactionId, receiptContent));
+            if (stored || !retryAfter(attempt)) {
+                return stored;
+            }
+        }
+    }
+
+    // Hedging decodes bytes into a String copy, so only a non-hedging instance passes them through
+    @Override
+    public boolean acceptsBytes() {
+        return hedgePercentile == 0 && delegate.acceptsBytes();
+    }
+
+    // Retries re-read the same bytes; a hedge may outlive this call, so hedging stores a String copy
+    @Override
+    public boolean storeReceipt(String transactionId, ByteBuffer receiptContent) {
+        if (receiptContent == null || hedgePercentile > 0) {
+            return storeReceipt(transactionId,
+                    receiptContent == null ? null : StandardCharsets.UTF_8.decode(receiptContent).toString());
+        }
+        retryBudget.deposit();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (!circuitBreaker.allowRequest()) {
+                    rejectedByBreaker.incrementAndGet();
+                    return false;
+                }
+                boolean stored = attempt(() -> delegate.storeReceipt(transactionId, receiptContent.duplicate()));
+                if (stored || !retryAfter(attempt)) {
+                    return stored;
+                }
+            }
+        } finally {
+            receiptContent.position(receiptContent.limit());
+        }
+    }
+
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        List<Receipt> remaining = new ArrayList<>(receipts);
+        int[] positions = IntStream.range(0, remaining.size()).toArray();
+        Boolean[] results = new Boolean[remaining.size()];
+        Arrays.fill(results, false);
+        retryBudget.deposit();
+        for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                rejectedByBreaker.incrementAndGet();
+                break;
+            }
+            List<Boolean> stored = attemptBatch(remaining);
+            List<Receipt> failed = new ArrayList<>();
+            int[] failedPositions = new int[remaining.size()];
+            for (int i = 0; i < remaining.size(); i++) {
+                if (i < stored.size() && Boolean.TRUE.equals(stored.get(i))) {
+                    results[positions[i]] = true;
+                } else {
+                    failedPositions[failed.size()] = positions[i];
+                    failed.add(remaining.get(i));
+                }
+            }
+            recordOutcome(failed.isEmpty());
+            if (failed.isEmpty() || !retryAfter(attempt)) {
+                break;
+            }
+            remaining = failed;
+            positions = failedPositions;
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                        Executor executor) {
+        retryBudget.deposit();
+        return storeAsync(transactionId, receiptContent, executor, 1);
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    public long getRejectedByBreakerCount() {
+        return rejectedByBreaker.get();
+    }
+
+    private CompletableFuture<Boolean> storeAsync(String transactionId, String receiptContent,
+                                                  Executor executor, int attempt) {
+        if (!circuitBreaker.allowRequest()) {
+            rejectedByBreaker.incrementAndGet();
+            return CompletableFuture.completedFuture(false);
+        }
+        return hedgedAttempt(transactionId, receiptContent, executor).thenCompose(stored -> {
+            recordOutcome(stored);
+            if (stored || attempt >= maxAttempts || !retryBudget.tryWithdraw()) {
+                return CompletableFuture.completedFuture(stored);
+            }
+            retries.incrementAndGet();
+            Executor delayed = CompletableFuture.delayedExecutor(backoffNanos(attempt), TimeUnit.NANOSECONDS, executor);
+            return CompletableFuture.runAsync(() -> { }, delayed)
+                    .thenCompose(ignored -> storeAsync(transactionId, receiptContent, executor, attempt + 1));
+        });
+    }
+
+    // Completes with true on the first success, or false once every request sent has failed
+    private CompletableFuture<Boolean> hedgedAttempt(String transactionId, String receiptContent, Executor executor) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        BiConsumer<Boolean, Throwable> onDone = (stored, error) -> {
+            if (Boolean.TRUE.equals(stored)) {
+                result.complete(true);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.complete(false);
+            }
+        };
+        timedAsync(transactionId, receiptContent, executor).whenComplete(onDone);
+
+        long delayNanos = hedgeDelayNanos();
+        if (delayNanos != NO_HEDGE && !result.isDone()) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                // Only hedge while the first request is still running, and never after it failed
+                if (result.isDone() || outstanding.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                    return;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    onDone.accept(false, null);
+                    return;
+                }
+                hedges.incrementAndGet();
+                timedAsync(transactionId, receiptContent, executor).whenComplete(onDone);
+            });
+        }
+        return result;
+    }
+
+    private CompletableFuture<Boolean> timedAsync(String transactionId, String receiptContent, Executor executor) {
+        long start = attemptLatency.start();
+        // Started on the executor, so a delegate that writes inside storeReceiptAsync cannot delay the hedge
+        return CompletableFuture.supplyAsync(
+                () -> delegate.storeReceiptAsync(transactionId, receiptContent, executor), executor)
+                .thenCompose(attempt -> attempt)
+                .handle((stored, error) -> {
+                    boolean success = error == null && Boolean.TRUE.equals(stored);
+                    attemptLatency.record(start, success);
+                    return success;
+                });
+    }
+
+    private boolean attempt(BooleanSupplier call) {
+        long start = attemptLatency.start();
+        boolean stored;
+        try {
+            stored = call.getAsBoolean();
+        } catch (RuntimeException e) {
+            stored = false;
+        }
+        attemptLatency.record(start, stored);
+        recordOutcome(stored);
+        return stored;
+    }
+
+    // A batch that throws or returns too few results counts as failed for the missing receipts
+    private List<Boolean> attemptBatch(List<Receipt> receipts) {
+        try {
+            return delegate.storeReceipts(receipts);
+        } catch (RuntimeException e) {
+            return List.of();
+        }
+    }
+
+    private void recordOutcome(boolean stored) {
+        if (stored) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    // Sleeps before the next attempt; false if no attempt should follow
+    private boolean retryAfter(int attempt) {
+        if (attempt >= maxAttempts || !retryBudget.tryWithdraw()) {
+            return false;
+        }
+        retries.incrementAndGet();
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoffNanos(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Full jitter: uniform between zero and base * 2^(attempt - 1), capped at maxBackoff
+    private long backoffNanos(int attempt) {
+        long cap = baseBackoffNanos << Math.min(attempt - 1, 30);
+        if (cap < 0 || cap > maxBackoffNanos) {
+            cap = maxBackoffNanos;
+        }
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    // Recomputed at most once a second, except while there are too few samples to hedge on
+    private long hedgeDelayNanos() {
+        if (hedgePercentile == 0) {
+            return NO_HEDGE;
+        }
+        long delay = hedgeDelayNanos;
+        long now = System.nanoTime();
+        long nextRefresh = nextHedgeRefreshNanos.get();
+        if ((delay == NO_HEDGE || now - nextRefresh >= 0)
+                && nextHedgeRefreshNanos.compareAndSet(nextRefresh, now + HEDGE_REFRESH_NANOS)) {
+            LatencySnapshot snapshot = attemptLatency.snapshot();
+            delay = snapshot.getCount() < MIN_HEDGE_SAMPLES
+                    ? NO_HEDGE
+                    : snapshot.getValueAtPercentile(hedgePercentile);
+            hedgeDelayNanos = delay;
+        }
+        return delay;
+    }
+}
+
+// ============================================================================
+// TESTS USING RESILIENT DECORATOR
+// ============================================================================
+
+class ResilientS3StorageServiceTest {
+    private static final Duration NO_BACKOFF = Duration.ZERO;
+
+    @Test
+    void storeReceipt_transientFailure_retriesAndStores() {
+        // Arrange
+        FlakyS3StorageService flaky = new FlakyS3StorageService(2);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(flaky, 3, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0.1, 10), new CircuitBreaker(10, Duration.ofSeconds(1)));
+
+        // Act
+        boolean stored = resilient.storeReceipt("TXN-1", "receipt");
+
+        // Assert
+        assertTrue(stored);
+        assertEquals(3, flaky.getCallCount());
+        assertEquals(2, resilient.getRetryCount());
+    }
+
+    @Test
+    void storeReceipt_retryBudgetSpent_stopsRetrying() {
+        // Arrange
+        FlakyS3StorageService alwaysFails = new FlakyS3StorageService(Integer.MAX_VALUE);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(alwaysFails, 5, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0, 2), new CircuitBreaker(100, Duration.ofSeconds(1)));
+
+        // Act
+        resilient.storeReceipt("TXN-1", "receipt");
+        resilient.storeReceipt("TXN-2", "receipt");
+
+        // Assert: two budgeted retries in total, then first attempts only
+        assertEquals(4, alwaysFails.getCallCount());
+    }
+
+    @Test
+    void storeReceipt_breakerOpen_rejectsWithoutCallingStore() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        FlakyS3StorageService flaky = new FlakyS3StorageService(3);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(flaky, 1, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0, 0), new CircuitBreaker(3, Duration.ofSeconds(5), clock::get));
+        resilient.storeReceipt("TXN-1", "receipt");
+        resilient.storeReceipt("TXN-2", "receipt");
+        resilient.storeReceipt("TXN-3", "receipt");
+
+        // Act
+        boolean storedWhileOpen = resilient.storeReceipt("TXN-OPEN", "receipt");
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        boolean probeStored = resilient.storeReceipt("TXN-PROBE", "receipt");
+
+        // Assert
+        assertFalse(storedWhileOpen);
+        assertEquals(1, resilient.getRejectedByBreakerCount());
+        assertTrue(probeStored, "Expected a probe once the open period has passed");
+        assertEquals(4, flaky.getCallCount());
+    }
+
+    @Test
+    void storeReceipt_attemptSlowerThanPercentile_hedgedRequestWins() {
+        // Arrange
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch release = new CountDownLatch(1);
+        StallingS3StorageService stalling = new StallingS3StorageService("stall", release);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(stalling, 1, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0.1, 10), new CircuitBreaker(10, Duration.ofSeconds(1)), 90, executor);
+        warmUp(resilient, 200);
+        long hedgesBefore = resilient.getHedgeCount();
+
+        try {
+            // Act
+            boolean stored = resilient.storeReceipt("TXN-SLOW", "stall");
+
+            // Assert
+            assertTrue(stored, "Expected the hedged request to store the receipt");
+            assertTrue(resilient.getHedgeCount() > hedgesBefore, "Expected the stalled write to be hedged");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void storeReceipts_oneReceiptFails_retriesOnlyThatReceipt() {
+        // Arrange
+        FlakyS3StorageService flaky = new FlakyS3StorageService(1);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(flaky, 2, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0.1, 10), new CircuitBreaker(10, Duration.ofSeconds(1)));
+
+        // Act
+        List<Boolean> results = resilient.storeReceipts(List.of(
+                new Receipt("TXN-1", "Receipt 1"), new Receipt("TXN-2", "Receipt 2")));
+
+        // Assert
+        assertEquals(List.of(true, true), results);
+        assertEquals(3, flaky.getCallCount(), "Expected only the failed receipt to be sent again");
+        assertEquals(1, resilient.getRetryCount());
+    }
+
+    @Test
+    void storeReceipts_breakerOpen_rejectsWithoutCallingStore() {
+        // Arrange
+        FlakyS3StorageService flaky = new FlakyS3StorageService(1);
+        ResilientS3StorageService resilient = new ResilientS3StorageService(flaky, 1, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0, 0), new CircuitBreaker(1, Duration.ofSeconds(5)));
+        resilient.storeReceipt("TXN-1", "receipt");
+
+        // Act
+        List<Boolean> results = resilient.storeReceipts(List.of(new Receipt("TXN-2", "Receipt 2")));
+
+        // Assert
+        assertEquals(List.of(false), results);
+        assertEquals(1, flaky.getCallCount());
+        assertEquals(1, resilient.getRejectedByBreakerCount());
+    }
+
+    @Test
+    void processPayment_storageFailsOnce_stillSucceeds() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(new ResilientS3StorageService(
+                new FlakyS3StorageService(1), 2, NO_BACKOFF, NO_BACKOFF,
+                new RetryBudget(0.1, 10), new CircuitBreaker(10, Duration.ofSeconds(1))));
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 10.00);
+
+        // Assert
+        assertNotNull(transactionId, "Expected the retry to rescue the payment");
+    }
+
+    // Fills the latency history, so the hedge percentile is based on enough fast writes
+    private static void warmUp(ResilientS3StorageService resilient, int writes) {
+        IntStream.range(0, writes).forEach(i -> resilient.storeReceipt("TXN-WARMUP-" + i, "receipt"));
+    }
+
+    // Fails the first failuresBeforeSuccess calls, then stores normally
+    private static class FlakyS3StorageService extends FakeS3StorageService {
+        private final int failuresBeforeSuccess;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FlakyS3StorageService(int failuresBeforeSuccess) {
+            this.failuresBeforeSuccess = failuresBeforeSuccess;
+        }
+
+        @Override
+        public synchronized boolean storeReceipt(String transactionId, String receiptContent) {
+            return calls.incrementAndGet() > failuresBeforeSuccess
+                    && super.storeReceipt(transactionId, receiptContent);
+        }
+
+        int getCallCount() {
+            return calls.get();
+        }
+    }
+
+    // Blocks the first write of stallContent until released; every other write is fast
+    private static class StallingS3StorageService extends FakeS3StorageService {
+        private final String stallContent;
+        private final CountDownLatch release;
+        private final AtomicInteger stalledWrites = new AtomicInteger();
+
+        StallingS3StorageService(String stallContent, CountDownLatch release) {
+            this.stallContent = stallContent;
+            this.release = release;
+        }
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            if (stallContent.equals(receiptContent) && stalledWrites.getAndIncrement() == 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                return super.storeReceipt(transactionId, receiptContent);
+            }
+        }
+    }
+}
@@ -0,0 +1,826 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating tiered receipt storage: a bounded hot map in memory, compressed blocks on disk.
+ *
+ * Key Points:
+ * 1. The newest receipts stay in memory, so recent lookups never touch the disk
+ * 2. Older receipts are grouped into blocks, deflated and appended to cold segment files
+ * 3. Only the newest maxSegments segments and their indexes are kept, so heap and disk stay flat
+ * 4. compact() drops cold copies superseded by later writes, swapping segments only after a full copy
+ * 5. getReceipt reads through every tier; callers never see where a receipt lives
+ */
+
+// ============================================================================
+// TIERED IMPLEMENTATION
+// ============================================================================
+
+/**
+ * S3StorageService that keeps at most maxHotReceipts receipts in memory and moves
+ * older ones, blockReceipts at a time, into deflated blocks in cold segment files
+ * of segmentBlocks blocks each.
+ *
+ * Blocks are [int compressedLength][int rawLength][deflated records], where
+ * records use the [int idLength][int contentLength][id UTF-8][content UTF-8]
+ * layout of MappedFileS3StorageService. Storing a transaction ID again puts the
+ * new receipt in the hot tier; the old cold copy stays in its block and in the
+ * index until compact(). Lookups try the hot tier, then the pending block, then
+ * every cold block indexed under the ID's hash, newest first, comparing full
+ * IDs, so neither a rewrite nor a hash collision returns the wrong receipt.
+ *
+ * Each segment has its own index on the heap: 12 bytes per indexed cold copy in
+ * a table kept at most half full, plus 8 bytes per block. Starting a segment
+ * beyond maxSegments deletes the oldest one with its index, so heap and disk hold
+ * at most maxSegments * segmentBlocks * blockReceipts cold copies however long
+ * the store runs. Receipts in a deleted segment are gone and getReceipt returns
+ * null for them: size the segments for how long receipts must stay readable.
+ *
+ * Segment files are scratch space: each is created empty in the directory and
+ * deleted when it expires, when compact() replaces it, or on close. compact()
+ * writes new segments next to the old ones and swaps them in only after every
+ * live copy was written. Writes, tier moves and compaction hold the instance
+ * lock; cold reads find their blocks under the lock, then read and inflate them
+ * without holding it. An interrupt during a read or write closes the segment's
+ * channel for every thread, so the channel is reopened; an interrupted reader
+ * gets an UncheckedIOException and keeps its interrupt status.
+ */
+class TieredS3StorageService implements S3StorageService, Closeable {
+    private static final int RECORD_HEADER_BYTES = MappedFileS3StorageService.RECORD_HEADER_BYTES;
+    private static final int BLOCK_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final int maxHotReceipts;
+    private final int blockReceipts;
+    private final int segmentBlocks;
+    private final int maxSegments;
+    private final ToLongFunction<String> hasher;
+    // Insertion order: the eldest entry is the least recently written
+    private final LinkedHashMap<String, String> hot = new LinkedHashMap<>();
+    // Evicted from the hot tier and still readable here until a full block is written
+    private final LinkedHashMap<String, String> pendingBlock = new LinkedHashMap<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    // Oldest first; replaced as a whole by compact()
+    private ArrayDeque<ColdSegment> segments = new ArrayDeque<>();
+    private boolean closed;
+
+    public TieredS3StorageService(Path directory, int maxHotReceipts, int blockReceipts,
+                                  int segmentBlocks, int maxSegments) {
+        this(directory, maxHotReceipts, blockReceipts, segmentBlocks, maxSegments, TieredS3StorageService::hash);
+    }
+
+    // hasher lets tests force hash collisions
+    TieredS3StorageService(Path directory, int maxHotReceipts, int blockReceipts, int segmentBlocks, int maxSegments,
+                           ToLongFunction<String> hasher) {
+        if (maxHotReceipts < 1 || blockReceipts < 1 || segmentBlocks < 1 || maxSegments < 1) {
+            throw new IllegalArgumentException("maxHotReceipts, blockReceipts, segmentBlocks and maxSegments must be"
+                    + " at least 1, were " + maxHotReceipts + ", " + blockReceipts + ", " + segmentBlocks
+                    + " and " + maxSegments);
+        }
+        this.directory = directory;
+        this.maxHotReceipts = maxHotReceipts;
+        this.blockReceipts = blockReceipts;
+        this.segmentBlocks = segmentBlocks;
+        this.maxSegments = maxSegments;
+        this.hasher = hasher;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create receipt directory " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean storeReceipt(String transactionId, String receiptContent) {
+        if (transactionId == null || receiptContent == null || closed) {
+            return false;
+        }
+        // Re-inserting moves a rewritten receipt to the newest end
+        hot.remove(transactionId);
+        pendingBlock.remove(transactionId);
+        hot.put(transactionId, receiptContent);
+        if (hot.size() > maxHotReceipts) {
+            Iterator<Map.Entry<String, String>> eldest = hot.entrySet().iterator();
+            Map.Entry<String, String> entry = eldest.next();
+            eldest.remove();
+            pendingBlock.put(entry.getKey(), entry.getValue());
+            if (pendingBlock.size() >= blockReceipts) {
+                try {
+                    writeBlock(pendingBlock, segments);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot write receipt block to " + directory, e);
+                }
+                pendingBlock.clear();
+                while (segments.size() > maxSegments) {
+                    segments.removeFirst().delete();
+                }
+            }
+        }
+        return true;
+    }
+
+    public String getReceipt(String transactionId) {
+        if (transactionId == null) {
+            return null;
+        }
+        long hash = hasher.applyAsLong(transactionId);
+        while (true) {
+            ColdSegment[] searched;
+            FileChannel[] files;
+            long[][] offsets;
+            synchronized (this) {
+                String content = hot.get(transactionId);
+                if (content == null) {
+                    content = pendingBlock.get(transactionId);
+                }
+                if (content != null) {
+                    return content;
+                }
+                searched = new ColdSegment[segments.size()];
+                files = new FileChannel[searched.length];
+                offsets = new long[searched.length][];
+                Iterator<ColdSegment> newestFirst = segments.descendingIterator();
+                for (int i = 0; i < searched.length; i++) {
+                    searched[i] = newestFirst.next();
+                    files[i] = searched[i].file;
+                    offsets[i] = searched[i].blockOffsets(hash);
+                }
+            }
+            int segment = 0;
+            try {
+                for (; segment < searched.length; segment++) {
+                    for (long offset : offsets[segment]) {
+                        String content = findInBlock(readBlock(files[segment], offset), transactionId);
+                        if (content != null) {
+                            return content;
+                        }
+                    }
+                }
+                return null;
+            } catch (ClosedChannelException e) {
+                synchronized (this) {
+                    if (closed) {
+                        throw new UncheckedIOException("Tiered receipt store in " + directory + " is closed", e);
+                    }
+                    searched[segment].reopen(files[segment]);
+                }
+                if (e instanceof ClosedByInterruptException) {
+                    throw new UncheckedIOException("Interrupted reading a receipt block from "
+                            + searched[segment].path, e);
+                }
+                // Another reader was interrupted, or the segment expired or was compacted: look the blocks up again
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read receipt block from " + searched[segment].path, e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the cold tier with only the live copy of each receipt, dropping copies
+     * superseded by a later write, and rebuilds the indexes. The copies go to new
+     * segments, which replace the old ones only once all were written; if copying
+     * fails, the new segments are deleted and the old ones stay in use. Blocks writers
+     * while it runs.
+     */
+    public synchronized void compact() {
+        ArrayDeque<ColdSegment> old = segments;
+        ArrayDeque<ColdSegment> compacted = new ArrayDeque<>();
+        try {
+            copyLiveReceipts(liveRecords(), compacted);
+            segments = compacted;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact cold receipts in " + directory, e);
+        } finally {
+            // The old segments once the copy succeeded, the partial copy otherwise
+            deleteSegments(segments == compacted ? old : compacted);
+        }
+    }
+
+    public synchronized int getHotReceiptCount() {
+        return hot.size();
+    }
+
+    public synchronized int getColdSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getColdBlockCount() {
+        int blocks = 0;
+        for (ColdSegment segment : segments) {
+            blocks += segment.blockCount;
+        }
+        return blocks;
+    }
+
+    public synchronized long getColdFileBytes() {
+        long bytes = 0;
+        for (ColdSegment segment : segments) {
+            bytes += segment.bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deflater.end();
+        deleteSegments(segments);
+    }
+
+    // Called with the instance lock held. One BitSet per block, oldest block first, of the records
+    // holding the live copy of their ID; newest blocks are read first, so the first copy seen is live
+    private ArrayDeque<BitSet> liveRecords() throws IOException {
+        Set<String> seen = new HashSet<>(hot.keySet());
+        seen.addAll(pendingBlock.keySet());
+        ArrayDeque<BitSet> live = new ArrayDeque<>();
+        for (Iterator<ColdSegment> newestFirst = segments.descendingIterator(); newestFirst.hasNext(); ) {
+            ColdSegment segment = newestFirst.next();
+            for (int block = segment.blockCount - 1; block >= 0; block--) {
+                BitSet liveInBlock = new BitSet();
+                int record = 0;
+                for (String transactionId : records(readBlock(segment, block)).keySet()) {
+                    if (seen.add(transactionId)) {
+                        liveInBlock.set(record);
+                    }
+                    record++;
+                }
+                live.addFirst(liveInBlock);
+            }
+        }
+        return live;
+    }
+
+    // Called with the instance lock held; copies the live records, oldest first, into new blocks
+    private void copyLiveReceipts(ArrayDeque<BitSet> live, ArrayDeque<ColdSegment> target) throws IOException {
+        Iterator<BitSet> liveInBlock = live.iterator();
+        LinkedHashMap<String, String> receipts = new LinkedHashMap<>();
+        for (ColdSegment segment : segments) {
+            for (int block = 0; block < segment.blockCount; block++) {
+                BitSet keep = liveInBlock.next();
+                int record = 0;
+                for (Map.Entry<String, String> receipt : records(readBlock(segment, block)).entrySet()) {
+                    if (keep.get(record++)) {
+                        receipts.put(receipt.getKey(), receipt.getValue());
+                    }
+                    if (receipts.size() == blockReceipts) {
+                        writeBlock(receipts, target);
+                        receipts.clear();
+                    }
+                }
+            }
+        }
+        if (!receipts.isEmpty()) {
+            writeBlock(receipts, target);
+        }
+    }
+
+    // Called with the instance lock held; appends a block to the newest segment of target,
+    // starting a new segment when that one is full
+    private void writeBlock(Map<String, String> receipts, ArrayDeque<ColdSegment> target) throws IOException {
+        int rawLength = 0;
+        for (Map.Entry<String, String> receipt : receipts.entrySet()) {
+            rawLength += RECORD_HEADER_BYTES + utf8Length(receipt.getKey()) + utf8Length(receipt.getValue());
+        }
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        for (Map.Entry<String, String> receipt : receipts.entrySet()) {
+            byte[] id = receipt.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] content = receipt.getValue().getBytes(StandardCharsets.UTF_8);
+            raw.putInt(id.length).putInt(content.length).put(id).put(content);
+        }
+
+        deflater.reset();
+        deflater.setInput(raw.array());
+        deflater.finish();
+        byte[] compressed = new byte[BLOCK_HEADER_BYTES + rawLength / 2 + 64];
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (BLOCK_HEADER_BYTES + compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, BLOCK_HEADER_BYTES + compressedLength,
+                    compressed.length - BLOCK_HEADER_BYTES - compressedLength);
+        }
+        ByteBuffer block = ByteBuffer.wrap(compressed, 0, BLOCK_HEADER_BYTES + compressedLength);
+        block.putInt(0, compressedLength).putInt(Integer.BYTES, rawLength);
+
+        ColdSegment segment = target.peekLast();
+        if (segment == null || segment.blockCount == segmentBlocks) {
+            segment = ColdSegment.create(directory);
+            target.addLast(segment);
+        }
+        segment.append(block);
+        for (String transactionId : receipts.keySet()) {
+            segment.index.put(hasher.applyAsLong(transactionId), segment.blockCount - 1);
+        }
+    }
+
+    // Called with the instance lock held; reopens a channel closed by another thread's interrupt
+    private ByteBuffer readBlock(ColdSegment segment, int block) throws IOException {
+        while (true) {
+            FileChannel channel = segment.file;
+            try {
+                return readBlock(channel, segment.offsets[block]);
+            } catch (ClosedChannelException e) {
+                segment.reopen(channel);
+                if (e instanceof ClosedByInterruptException || segment.file == channel) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private ByteBuffer readBlock(FileChannel file, long offset) throws IOException {
+        ByteBuffer header = readFully(file, offset, BLOCK_HEADER_BYTES);
+        int compressedLength = header.getInt(0);
+        int rawLength = header.getInt(Integer.BYTES);
+        ByteBuffer compressed = readFully(file, offset + BLOCK_HEADER_BYTES, compressedLength);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+            }
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt receipt block at offset " + offset + " in " + directory, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel file, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of cold segment at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Deletes every segment, even if deleting one of them fails
+    private static void deleteSegments(Collection<ColdSegment> expired) {
+        UncheckedIOException failure = null;
+        for (ColdSegment segment : expired) {
+            try {
+                segment.delete();
+            } catch (UncheckedIOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Every record of an inflated block, in block order; IDs are unique within a block
+    private static LinkedHashMap<String, String> records(ByteBuffer block) {
+        LinkedHashMap<String, String> records = new LinkedHashMap<>();
+        while (block.remaining() >= RECORD_HEADER_BYTES) {
+            int idLength = block.getInt();
+            int contentLength = block.getInt();
+            String id = new String(block.array(), block.position(), idLength, StandardCharsets.UTF_8);
+            String content = new String(block.array(), block.position() + idLength, contentLength,
+                    StandardCharsets.UTF_8);
+            block.position(block.position() + idLength + contentLength);
+            records.put(id, content);
+        }
+        return records;
+    }
+
+    // Null if the block holds another ID with the same hash
+    private static String findInBlock(ByteBuffer block, String transactionId) {
+        byte[] wanted = transactionId.getBytes(StandardCharsets.UTF_8);
+        while (block.remaining() >= RECORD_HEADER_BYTES) {
+            int idLength = block.getInt();
+            int contentLength = block.getInt();
+            int idStart = block.position();
+            if (idLength == wanted.length
+                    && block.slice(idStart, idLength).equals(ByteBuffer.wrap(wanted))) {
+                return new String(block.array(), idStart + idLength, contentLength, StandardCharsets.UTF_8);
+            }
+            block.position(idStart + idLength + contentLength);
+        }
+        return null;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // 64-bit FNV-1a over the ID's chars, then a murmur3 finalizer to spread the bits
+    private static long hash(String transactionId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < transactionId.length(); i++) {
+            hash = (hash ^ transactionId.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * One cold segment file with its block offsets and its own index from ID hash to block.
+     * Guarded by the lock of the TieredS3StorageService that owns it.
+     */
+    private static final class ColdSegment {
+        private static final long[] NO_OFFSETS = new long[0];
+
+        final Path path;
+        final BlockIndex index = new BlockIndex();
+        FileChannel file;
+        long[] offsets = new long[64];
+        int blockCount;
+        long bytes;
+        private boolean deleted;
+
+        private ColdSegment(Path path, FileChannel file) {
+            this.path = path;
+            this.file = file;
+        }
+
+        static ColdSegment create(Path directory) throws IOException {
+            Path path = Files.createTempFile(directory, "cold-segment-", ".dat");
+            return new ColdSegment(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        // Offsets of the blocks indexed under the hash, newest first
+        long[] blockOffsets(long hash) {
+            int[] blocks = index.get(hash);
+            if (blocks.length == 0) {
+                return NO_OFFSETS;
+            }
+            long[] found = new long[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                found[i] = offsets[blocks[i]];
+            }
+            return found;
+        }
+
+        // Writes the block at the end of the file; a channel closed by another thread's interrupt is reopened
+        void append(ByteBuffer block) throws IOException {
+            while (block.hasRemaining()) {
+                FileChannel channel = file;
+                try {
+                    channel.write(block, bytes + block.position());
+                } catch (ClosedChannelException e) {
+                    reopen(channel);
+                    if (e instanceof ClosedByInterruptException || file == channel) {
+                        throw e;
+                    }
+                }
+            }
+            if (blockCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blockCount * 2);
+            }
+            offsets[blockCount++] = bytes;
+            bytes += block.limit();
+        }
+
+        // Replaces a channel closed by an interrupt; no-op if it was already replaced or the segment deleted
+        void reopen(FileChannel closed) {
+            if (file != closed || deleted) {
+                return;
+            }
+            try {
+                file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot reopen cold segment " + path, e);
+            }
+        }
+
+        void delete() {
+            deleted = true;
+            try {
+                file.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete cold segment " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Open-addressing multimap from 64-bit ID hash to block numbers, in two primitive arrays.
+     * Avoids a String key and boxed value per cold receipt; kept at most half full.
+     * Every put adds an entry, so colliding IDs and rewritten copies each keep their block.
+     */
+    private static final class BlockIndex {
+        private static final long EMPTY = 0;
+        private static final int[] NO_BLOCKS = new int[0];
+
+        private long[] keys = new long[1 << 10];
+        private int[] blocks = new int[1 << 10];
+        private int size;
+
+        // Blocks indexed under the hash, newest first
+        int[] get(long hash) {
+            long key = hash == EMPTY ? 1 : hash;
+            int mask = keys.length - 1;
+            int[] found = NO_BLOCKS;
+            int count = 0;
+            for (int slot = (int) key & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, Math.max(2, count * 2));
+                    }
+                    found[count++] = blocks[slot];
+                }
+            }
+            if (count > 1) {
+                Arrays.sort(found, 0, count);
+                for (int i = 0, j = count - 1; i < j; i++, j--) {
+                    int swap = found[i];
+                    found[i] = found[j];
+                    found[j] = swap;
+                }
+            }
+            return count == found.length ? found : Arrays.copyOf(found, count);
+        }
+
+        void put(long hash, int block) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            long key = hash == EMPTY ? 1 : hash;
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            blocks[slot] = block;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldBlocks = blocks;
+            keys = new long[oldKeys.length * 2];
+            blocks = new int[oldBlocks.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    put(oldKeys[slot], oldBlocks[slot]);
+                }
+            }
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING TIERED IMPLEMENTATION
+// ============================================================================
+
+class TieredS3StorageServiceTest {
+    // Same length for every ID from 1000 to 9999, so raw sizes are known up front
+    private static final String RECEIPT_FORMAT = "Transaction: TXN-%d\nCard: ****-9010\nAmount: $99.99";
+    private static final int RECEIPT_LENGTH = String.format(RECEIPT_FORMAT, 1000).length();
+
+    @TempDir
+    Path receiptDirectory;
+
+    private TieredS3StorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        // Two hot receipts and two receipts per cold block, so a handful of writes reaches every tier
+        storage = new TieredS3StorageService(receiptDirectory, 2, 2, 16, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void getReceipt_receiptsInEveryTier_readsEachReceipt() {
+        // Arrange
+        storeReceipts(storage, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5");
+
+        // Act & Assert
+        assertEquals("Receipt TXN-1", storage.getReceipt("TXN-1"), "Expected oldest receipt from the cold tier");
+        assertEquals("Receipt TXN-3", storage.getReceipt("TXN-3"), "Expected receipt from the pending block");
+        assertEquals("Receipt TXN-5", storage.getReceipt("TXN-5"), "Expected newest receipt from the hot tier");
+        assertNull(storage.getReceipt("TXN-UNKNOWN"));
+    }
+
+    @Test
+    void storeReceipt_moreReceiptsThanHotLimit_keepsHotTierBounded() {
+        // Act
+        storeReceipts(storage, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5", "TXN-6");
+
+        // Assert
+        assertEquals(2, storage.getHotReceiptCount());
+        assertEquals(2, storage.getColdBlockCount(), "Expected 4 evicted receipts in blocks of 2");
+    }
+
+    @Test
+    void storeReceipt_similarReceipts_compressesColdBlocks() {
+        // Arrange
+        TieredS3StorageService blocksOf100 = new TieredS3StorageService(receiptDirectory.resolve("large"),
+                10, 100, 16, 4);
+
+        try {
+            // Act: 110 receipts, so 100 reach the cold tier as one block
+            storeFormattedReceipts(blocksOf100, 1000, 1110);
+
+            // Assert
+            assertEquals(1, blocksOf100.getColdBlockCount());
+            assertTrue(blocksOf100.getColdFileBytes() < 100 * RECEIPT_LENGTH / 2,
+                    "Expected cold blocks under half the raw size, were " + blocksOf100.getColdFileBytes() + " bytes");
+        } finally {
+            blocksOf100.close();
+        }
+    }
+
+    @Test
+    void storeReceipt_coldReceiptRewritten_returnsLatestContent() {
+        // Arrange
+        storage.storeReceipt("TXN-1", "original");
+        storeReceipts(storage, "TXN-2", "TXN-3", "TXN-4");
+
+        // Act
+        storage.storeReceipt("TXN-1", "corrected");
+        storeReceipts(storage, "TXN-5", "TXN-6", "TXN-7");
+
+        // Assert
+        assertEquals("corrected", storage.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void getReceipt_idsWithSameHash_readsEachReceipt() {
+        // Arrange
+        TieredS3StorageService colliding = new TieredS3StorageService(receiptDirectory.resolve("colliding"), 2, 2,
+                16, 4, transactionId -> 42L);
+
+        try {
+            storeReceipts(colliding, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5", "TXN-6");
+
+            // Act & Assert
+            assertEquals("Receipt TXN-1", colliding.getReceipt("TXN-1"));
+            assertEquals("Receipt TXN-3", colliding.getReceipt("TXN-3"), "Expected a colliding ID in a later block");
+            assertNull(colliding.getReceipt("TXN-UNKNOWN"), "Expected no receipt for an unknown colliding ID");
+        } finally {
+            colliding.close();
+        }
+    }
+
+    @Test
+    void compact_supersededColdCopies_dropsThemAndKeepsLatestReceipts() {
+        // Arrange: TXN-1 to TXN-4 go cold, then are rewritten and two of the rewrites go cold again
+        storeReceipts(storage, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5", "TXN-6");
+        storage.storeReceipt("TXN-1", "rewritten");
+        storage.storeReceipt("TXN-2", "rewritten");
+        storage.storeReceipt("TXN-3", "rewritten");
+        storage.storeReceipt("TXN-4", "rewritten");
+        long bytesBefore = storage.getColdFileBytes();
+
+        // Act
+        storage.compact();
+
+        // Assert
+        assertEquals(2, storage.getColdBlockCount(), "Expected only TXN-5, TXN-6 and the cold rewrites to remain");
+        assertTrue(storage.getColdFileBytes() < bytesBefore);
+        assertEquals("rewritten", storage.getReceipt("TXN-1"));
+        assertEquals("rewritten", storage.getReceipt("TXN-4"));
+        assertEquals("Receipt TXN-5", storage.getReceipt("TXN-5"));
+    }
+
+    @Test
+    void storeReceipt_moreSegmentsThanRetained_deletesOldestSegment() {
+        // Arrange: one receipt per block and two blocks per segment, so TXN-1 to TXN-6 fill three segments
+        Path directory = receiptDirectory.resolve("retained");
+        TieredS3StorageService retaining = new TieredS3StorageService(directory, 1, 1, 2, 2);
+
+        try {
+            // Act
+            storeReceipts(retaining, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5", "TXN-6", "TXN-7");
+
+            // Assert
+            assertEquals(2, retaining.getColdSegmentCount());
+            assertEquals(2, countFiles(directory), "Expected the oldest segment file deleted");
+            assertNull(retaining.getReceipt("TXN-2"), "Expected receipts of the deleted segment gone");
+            assertEquals("Receipt TXN-3", retaining.getReceipt("TXN-3"));
+            assertEquals("Receipt TXN-7", retaining.getReceipt("TXN-7"));
+        } finally {
+            retaining.close();
+        }
+    }
+
+    @Test
+    void compact_newSegmentCannotBeCreated_keepsOldSegments() throws IOException {
+        // Arrange: the open segment files stay readable after their directory is removed
+        Path directory = receiptDirectory.resolve("removed");
+        TieredS3StorageService removed = new TieredS3StorageService(directory, 2, 2, 16, 4);
+        storeReceipts(removed, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5", "TXN-6");
+        deleteDirectory(directory);
+
+        try {
+            // Act
+            assertThrows(UncheckedIOException.class, removed::compact);
+
+            // Assert
+            assertEquals(2, removed.getColdBlockCount());
+            assertEquals("Receipt TXN-1", removed.getReceipt("TXN-1"));
+            assertEquals("Receipt TXN-4", removed.getReceipt("TXN-4"));
+        } finally {
+            removed.close();
+        }
+    }
+
+    @Test
+    void getReceipt_readerInterrupted_throwsAndLaterReadsSucceed() {
+        // Arrange
+        storeReceipts(storage, "TXN-1", "TXN-2", "TXN-3", "TXN-4", "TXN-5");
+        Thread.currentThread().interrupt();
+
+        // Act
+        assertThrows(UncheckedIOException.class, () -> storage.getReceipt("TXN-1"));
+        boolean interrupted = Thread.interrupted();
+
+        // Assert
+        assertTrue(interrupted, "Expected the reader to keep its interrupt status");
+        assertEquals("Receipt TXN-1", storage.getReceipt("TXN-1"), "Expected the closed segment reopened");
+    }
+
+    @Test
+    void processPayment_withTieredStorage_storesReceipt() {
+        // Arrange
+        CardPaymentProcessor processor = new CardPaymentProcessor(storage);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 42.00);
+
+        // Assert
+        assertTrue(storage.getReceipt(transactionId).contains("$42.00"));
+    }
+
+    // Stores "Receipt <id>" under each ID, in order
+    private static void storeReceipts(TieredS3StorageService target, String... transactionIds) {
+        for (String transactionId : transactionIds) {
+            target.storeReceipt(transactionId, "Receipt " + transactionId);
+        }
+    }
+
+    private static long countFiles(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void storeFormattedReceipts(TieredS3StorageService target, int fromId, int toId) {
+        IntStream.range(fromId, toId)
+                .forEach(id -> target.storeReceipt("TXN-" + id, String.format(RECEIPT_FORMAT, id)));
+    }
+}
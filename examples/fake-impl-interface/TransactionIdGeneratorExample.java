@@ -0,0 +1,192 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a pluggable transaction ID generator for CardPaymentProcessor.
+ *
+ * Key Points:
+ * 1. TransactionIdGenerator is an interface, so tests can inject a fixed clock
+ * 2. IDs combine time, node ID and a sequence, so payments in the same millisecond never collide
+ * 3. The default generator is lock-free (one CAS per ID) and never waits for the clock
+ * 4. IDs are fixed-width, so string order follows generation order
+ */
+
+// ============================================================================
+// TRANSACTION ID GENERATION
+// ============================================================================
+
+/**
+ * Generates unique transaction IDs for payments.
+ */
+interface TransactionIdGenerator {
+    /**
+     * @return a transaction ID that this generator has never returned before
+     */
+    String nextId();
+}
+
+/**
+ * Snowflake-style generator: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of node ID and a 12-bit sequence, encoded as "TXN-" plus
+ * 13 Crockford base32 characters.
+ *
+ * The timestamp and sequence share one AtomicLong that only ever moves
+ * forward. When more than 4096 IDs are requested in one millisecond, or the
+ * wall clock steps backwards, the generator borrows from the next millisecond
+ * instead of sleeping, so IDs stay unique and ordered on this node.
+ * Uniqueness across nodes requires a distinct node ID per process.
+ */
+class SnowflakeTransactionIdGenerator implements TransactionIdGenerator {
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final String PREFIX = "TXN-";
+    private static final int ENCODED_LENGTH = 13; // ceil(64 / 5)
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // (milliseconds since epoch << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    public SnowflakeTransactionIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeTransactionIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        long timeAndSequence = nextTimeAndSequence();
+        long millis = timeAndSequence >>> SEQUENCE_BITS;
+        long id = (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (timeAndSequence & SEQUENCE_MASK);
+        return encode(id);
+    }
+
+    private long nextTimeAndSequence() {
+        long nowBits = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTimeAndSequence.get();
+            long next = Math.max(last + 1, nowBits);
+            if (lastTimeAndSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    // Single char[] and String per ID; no intermediate StringBuilder or Long.toString
+    private static String encode(long id) {
+        char[] chars = new char[PREFIX.length() + ENCODED_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for (int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = BASE32[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
+
+// ============================================================================
+// TESTS FOR TRANSACTION ID GENERATION
+// ============================================================================
+
+class TransactionIdGeneratorTest {
+    private static final long FIXED_TIME = 1_750_000_000_000L;
+
+    @Test
+    void nextId_manyThreadsSameMillisecond_returnsUniqueIds() {
+        // Arrange
+        SnowflakeTransactionIdGenerator generator = new SnowflakeTransactionIdGenerator(1, () -> FIXED_TIME);
+
+        // Act
+        Set<String> ids = IntStream.range(0, 50_000).parallel()
+                .mapToObj(i -> generator.nextId())
+                .collect(Collectors.toSet());
+
+        // Assert
+        assertEquals(50_000, ids.size(), "Expected no duplicate IDs even beyond 4096 per millisecond");
+    }
+
+    @Test
+    void nextId_consecutiveCalls_returnsIncreasingFixedWidthIds() {
+        // Arrange
+        SnowflakeTransactionIdGenerator generator = new SnowflakeTransactionIdGenerator(1, () -> FIXED_TIME);
+
+        // Act
+        String first = generator.nextId();
+        String second = generator.nextId();
+
+        // Assert
+        assertEquals(first.length(), second.length());
+        assertTrue(first.startsWith("TXN-"), "Expected TXN- prefix but got " + first);
+        assertTrue(first.compareTo(second) < 0,
+                "Expected " + first + " to sort before " + second);
+    }
+
+    @Test
+    void nextId_clockStepsBackwards_stillIncreases() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(FIXED_TIME);
+        SnowflakeTransactionIdGenerator generator = new SnowflakeTransactionIdGenerator(1, clock::get);
+        String beforeClockStep = generator.nextId();
+        clock.set(FIXED_TIME - 5_000);
+
+        // Act
+        String afterClockStep = generator.nextId();
+
+        // Assert
+        assertTrue(beforeClockStep.compareTo(afterClockStep) < 0,
+                "Expected " + beforeClockStep + " to sort before " + afterClockStep);
+    }
+
+    @Test
+    void nextId_twoNodesSameMillisecond_returnsDifferentIds() {
+        // Arrange
+        SnowflakeTransactionIdGenerator node1 = new SnowflakeTransactionIdGenerator(1, () -> FIXED_TIME);
+        SnowflakeTransactionIdGenerator node2 = new SnowflakeTransactionIdGenerator(2, () -> FIXED_TIME);
+
+        // Act & Assert
+        assertNotEquals(node1.nextId(), node2.nextId());
+    }
+
+    @Test
+    void constructor_nodeIdOutOfRange_throwsIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeTransactionIdGenerator(SnowflakeTransactionIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    void processPayment_twoPaymentsSameMillisecond_storesBothReceipts() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        CardPaymentProcessor processor = new CardPaymentProcessor(fakeS3,
+                new SnowflakeTransactionIdGenerator(1, () -> FIXED_TIME));
+
+        // Act
+        String txn1 = processor.processPayment("4532111111111111", 100.00);
+        String txn2 = processor.processPayment("5105222222222222", 200.00);
+
+        // Assert
+        assertNotEquals(txn1, txn2);
+        assertEquals(2, fakeS3.getReceiptCount(), "Expected second payment not to overwrite the first receipt");
+    }
+}
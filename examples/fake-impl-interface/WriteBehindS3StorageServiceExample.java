@@ -0,0 +1,422 @@
+package examples.fake_vs_mock_interface;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating a write-behind stage between CardPaymentProcessor and S3StorageService.
+ *
+ * Key Points:
+ * 1. Receipts go into a bounded ring buffer and are written in group commits
+ * 2. A batch is written when it reaches maxBatchSize or flushInterval has passed
+ * 3. AckMode chooses whether a payment waits for the group commit or only for the buffer
+ * 4. A full buffer applies backpressure: callers wait up to enqueueTimeout, then get false
+ * 5. ON_FLUSH callers wait up to ackTimeout for their group commit, so a stuck delegate cannot hang them
+ */
+
+// ============================================================================
+// WRITE-BEHIND DECORATOR
+// ============================================================================
+
+/**
+ * When a receipt counts as stored.
+ */
+enum AckMode {
+    /** storeReceipt returns true once the receipt is in the buffer; a later write failure is only counted */
+    ON_ENQUEUE,
+    /**
+     * storeReceipt returns the result of the group commit that wrote the receipt, or false
+     * if that commit has not finished within ackTimeout; the receipt may still be written later
+     */
+    ON_FLUSH
+}
+
+/**
+ * Buffers receipts and writes them to the delegate in batches from one background thread.
+ *
+ * The delegate only ever sees storeReceipts calls from the flusher thread, so
+ * its latency spikes are absorbed by the buffer instead of payment threads
+ * (in ON_ENQUEUE mode) or shared across a whole batch (in ON_FLUSH mode).
+ * close() stops accepting receipts, writes everything still buffered and
+ * waits for the flusher thread to finish; that takes up to one flushInterval.
+ *
+ * Every batch completes its receipts' results, even when the delegate throws
+ * an Error; the flusher reports the Error to its uncaught exception handler
+ * and keeps running, since it is the only thread that writes.
+ */
+class WriteBehindS3StorageService implements S3StorageService, Closeable {
+    private final S3StorageService delegate;
+    private final BlockingQueue<PendingWrite> buffer;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final AckMode ackMode;
+    private final long enqueueTimeoutNanos;
+    private final long ackTimeoutNanos;
+    private final Thread flusher;
+    private final AtomicLong failedWrites = new AtomicLong();
+    // Enqueues in progress; the flusher drains until they finish so none is left unwritten
+    private final AtomicInteger activeEnqueues = new AtomicInteger();
+    private volatile boolean closed;
+
+    public WriteBehindS3StorageService(S3StorageService delegate, int capacity, int maxBatchSize,
+                                       Duration flushInterval, AckMode ackMode, Duration enqueueTimeout,
+                                       Duration ackTimeout) {
+        if (maxBatchSize < 1 || capacity < 1) {
+            throw new IllegalArgumentException("capacity and maxBatchSize must be at least 1, were "
+                    + capacity + " and " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.ackMode = ackMode;
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+        this.flusher = new Thread(this::flushLoop, "receipt-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public boolean storeReceipt(String transactionId, String receiptContent) {
+        PendingWrite write = enqueue(transactionId, receiptContent, enqueueTimeoutNanos);
+        if (write == null) {
+            return false;
+        }
+        return ackMode == AckMode.ON_ENQUEUE || awaitFlush(write, System.nanoTime() + ackTimeoutNanos);
+    }
+
+    @Override
+    public List<Boolean> storeReceipts(Collection<Receipt> receipts) {
+        List<PendingWrite> writes = new ArrayList<>(receipts.size());
+        for (Receipt receipt : receipts) {
+            writes.add(enqueue(receipt.getTransactionId(), receipt.getContent(), enqueueTimeoutNanos));
+        }
+        List<Boolean> results = new ArrayList<>(writes.size());
+        // One deadline for the whole call: the receipts share group commits
+        long deadline = System.nanoTime() + ackTimeoutNanos;
+        for (PendingWrite write : writes) {
+            results.add(write != null && (ackMode == AckMode.ON_ENQUEUE || awaitFlush(write, deadline)));
+        }
+        return results;
+    }
+
+    // Never blocks: a full buffer completes with false instead of waiting for space
+    @Override
+    public CompletableFuture<Boolean> storeReceiptAsync(String transactionId, String receiptContent,
+                                                        Executor executor) {
+        PendingWrite write = enqueue(transactionId, receiptContent, 0);
+        if (write == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (ackMode == AckMode.ON_ENQUEUE) {
+            return CompletableFuture.completedFuture(true);
+        }
+        // A copy, so the timeout never completes the flusher's own future
+        return write.result.copy().completeOnTimeout(false, ackTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    // Receipts whose group commit failed, in either mode; in ON_ENQUEUE mode their callers were already told "stored"
+    public long getFailedWriteCount() {
+        return failedWrites.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PendingWrite enqueue(String transactionId, String receiptContent, long timeoutNanos) {
+        if (transactionId == null || receiptContent == null) {
+            return null;
+        }
+        activeEnqueues.incrementAndGet();
+        try {
+            if (closed) {
+                return null;
+            }
+            PendingWrite write = new PendingWrite(new Receipt(transactionId, receiptContent));
+            return buffer.offer(write, timeoutNanos, TimeUnit.NANOSECONDS) ? write : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            activeEnqueues.decrementAndGet();
+        }
+    }
+
+    private boolean awaitFlush(PendingWrite write, long deadlineNanos) {
+        try {
+            return write.result.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+            writeBatch(batch);
+        }
+        // Keep draining until enqueues that started before close() have finished
+        while (activeEnqueues.get() > 0 || !buffer.isEmpty()) {
+            if (buffer.drainTo(batch, maxBatchSize) == 0) {
+                Thread.onSpinWait();
+            }
+            writeBatch(batch);
+        }
+    }
+
+    // Waits for a first receipt, then fills the batch until it is full or flushInterval has passed
+    private void collectBatch(List<PendingWrite> batch) throws InterruptedException {
+        PendingWrite first = buffer.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < maxBatchSize) {
+            buffer.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || remaining <= 0) {
+                return;
+            }
+            PendingWrite next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Receipt> receipts = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            receipts.add(write.receipt);
+        }
+        List<Boolean> results = List.of();
+        try {
+            results = delegate.storeReceipts(receipts);
+        } catch (RuntimeException e) {
+            // Counted below as failed writes
+        } catch (Error e) {
+            // Reported, not rethrown: an Error here would end the flusher and strand every later receipt
+            Thread flusherThread = Thread.currentThread();
+            flusherThread.getUncaughtExceptionHandler().uncaughtException(flusherThread, e);
+        } finally {
+            for (int i = 0; i < batch.size(); i++) {
+                boolean stored = i < results.size() && Boolean.TRUE.equals(results.get(i));
+                if (!stored) {
+                    failedWrites.incrementAndGet();
+                }
+                batch.get(i).result.complete(stored);
+            }
+            batch.clear();
+        }
+    }
+
+    private static final class PendingWrite {
+        private final Receipt receipt;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingWrite(Receipt receipt) {
+            this.receipt = receipt;
+        }
+    }
+}
+
+// ============================================================================
+// TESTS USING WRITE-BEHIND STORAGE
+// ============================================================================
+
+class WriteBehindS3StorageServiceTest {
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(5);
+    private static final Duration ACK_TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void storeReceipt_ackOnEnqueue_receiptIsWrittenByClose() {
+        // Arrange
+        FakeS3StorageService fakeS3 = new FakeS3StorageService();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                fakeS3, 16, 8, FLUSH_INTERVAL, AckMode.ON_ENQUEUE, Duration.ZERO, ACK_TIMEOUT);
+
+        // Act
+        boolean acknowledged = writeBehind.storeReceipt("TXN-1", "receipt");
+        writeBehind.close();
+
+        // Assert
+        assertTrue(acknowledged);
+        assertEquals("receipt", fakeS3.getReceipt("TXN-1"));
+    }
+
+    @Test
+    void storeReceipt_ackOnFlush_returnsAfterReceiptIsStored() {
+        // Arrange
+        ConcurrentFakeS3StorageService fakeS3 = new ConcurrentFakeS3StorageService();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                fakeS3, 16, 8, FLUSH_INTERVAL, AckMode.ON_FLUSH, Duration.ZERO, ACK_TIMEOUT);
+
+        // Act
+        boolean stored = writeBehind.storeReceipt("TXN-1", "receipt");
+
+        // Assert
+        assertTrue(stored);
+        assertEquals("receipt", fakeS3.getReceipt("TXN-1"),
+                "Expected ON_FLUSH acknowledgment only after the group commit wrote the receipt");
+        writeBehind.close();
+    }
+
+    @Test
+    void storeReceipt_bufferFull_returnsFalse() throws InterruptedException {
+        // Arrange
+        StalledS3StorageService stalledS3 = new StalledS3StorageService();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                stalledS3, 1, 1, FLUSH_INTERVAL, AckMode.ON_ENQUEUE, Duration.ZERO, ACK_TIMEOUT);
+        writeBehind.storeReceipt("TXN-1", "being written");
+        stalledS3.awaitWriteStarted();
+        writeBehind.storeReceipt("TXN-2", "fills the buffer");
+
+        // Act
+        boolean accepted = writeBehind.storeReceipt("TXN-3", "no room");
+
+        // Assert
+        assertFalse(accepted, "Expected backpressure to reject a receipt when the buffer is full");
+        stalledS3.release();
+        writeBehind.close();
+    }
+
+    @Test
+    void storeReceipt_ackOnFlushAndDelegateFails_returnsFalse() {
+        // Arrange
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                (transactionId, receiptContent) -> false, 16, 8, FLUSH_INTERVAL, AckMode.ON_FLUSH, Duration.ZERO,
+                ACK_TIMEOUT);
+
+        // Act
+        boolean stored = writeBehind.storeReceipt("TXN-1", "receipt");
+
+        // Assert
+        assertFalse(stored);
+        assertEquals(1, writeBehind.getFailedWriteCount());
+        writeBehind.close();
+    }
+
+    @Test
+    void storeReceipt_delegateThrowsError_failsBatchAndKeepsFlushing() {
+        // Arrange
+        ConcurrentFakeS3StorageService fakeS3 = new ConcurrentFakeS3StorageService();
+        AtomicInteger calls = new AtomicInteger();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService((transactionId, receiptContent) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new AssertionError("store crashed");
+            }
+            return fakeS3.storeReceipt(transactionId, receiptContent);
+        }, 16, 1, FLUSH_INTERVAL, AckMode.ON_FLUSH, Duration.ZERO, ACK_TIMEOUT);
+
+        // Act
+        boolean first = writeBehind.storeReceipt("TXN-1", "crashes the write");
+        boolean second = writeBehind.storeReceipt("TXN-2", "receipt");
+
+        // Assert
+        assertFalse(first, "Expected the crashed batch to complete as not stored");
+        assertTrue(second, "Expected the flusher to keep writing after an Error");
+        assertEquals("receipt", fakeS3.getReceipt("TXN-2"));
+        writeBehind.close();
+    }
+
+    @Test
+    void storeReceipt_ackOnFlushAndCommitStalls_returnsFalseAfterAckTimeout() throws InterruptedException {
+        // Arrange
+        StalledS3StorageService stalledS3 = new StalledS3StorageService();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                stalledS3, 16, 1, FLUSH_INTERVAL, AckMode.ON_FLUSH, Duration.ZERO, Duration.ofMillis(20));
+
+        // Act
+        boolean stored = assertTimeout(Duration.ofSeconds(2), () -> writeBehind.storeReceipt("TXN-1", "stalled"));
+
+        // Assert
+        assertFalse(stored, "Expected ON_FLUSH to give up once ackTimeout passed");
+        stalledS3.release();
+        writeBehind.close();
+    }
+
+    @Test
+    void processPayment_withWriteBehindStorage_returnsTransactionId() {
+        // Arrange
+        ConcurrentFakeS3StorageService fakeS3 = new ConcurrentFakeS3StorageService();
+        WriteBehindS3StorageService writeBehind = new WriteBehindS3StorageService(
+                fakeS3, 1024, 64, FLUSH_INTERVAL, AckMode.ON_FLUSH, Duration.ofMillis(100), ACK_TIMEOUT);
+        CardPaymentProcessor processor = new CardPaymentProcessor(writeBehind);
+
+        // Act
+        String transactionId = processor.processPayment("4532123456789010", 75.00);
+
+        // Assert
+        assertNotNull(transactionId);
+        assertTrue(fakeS3.getReceipt(transactionId).contains("$75.00"));
+        writeBehind.close();
+    }
+
+    // Storage whose writes block until released, to hold the flusher mid-write
+    static class StalledS3StorageService implements S3StorageService {
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            writeStarted.countDown();
+            try {
+                return released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        void awaitWriteStarted() throws InterruptedException {
+            writeStarted.await(5, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
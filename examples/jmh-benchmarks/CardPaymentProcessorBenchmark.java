@@ -0,0 +1,99 @@
+package examples.fake_vs_mock_interface;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the CardPaymentProcessor hot path.
+ *
+ * Key Points:
+ * 1. Measures throughput with JMH instead of hand-rolled System.currentTimeMillis() timing
+ * 2. Covers the full payment, card validation (rejected card), receipt generation and ID generation
+ * 3. The *_allCores variants run one shared processor on every core to expose contention
+ * 4. Storage keeps only the last receipt, so the benchmark measures the processor, not a growing map
+ *
+ * Run with the GC profiler and machine-readable output, e.g.
+ *   java -jar benchmarks.jar CardPaymentProcessorBenchmark -prof gc -rf json -rff card-payment.json
+ * and compare the JSON files of two releases; gc.alloc.rate.norm is bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CardPaymentProcessorBenchmark {
+    private static final String VALID_CARD = "4532123456789010";
+    private static final String INVALID_CARD = "123";
+
+    // 99.99 takes the encoder's fast path; 1.005 sits on a half cent and falls back to String.format
+    @Param({"99.99", "1.005"})
+    private double amount;
+
+    private CardPaymentProcessor processor;
+    private TransactionIdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        idGenerator = new SnowflakeTransactionIdGenerator(1);
+        processor = new CardPaymentProcessor(new LastReceiptS3StorageService(), idGenerator);
+    }
+
+    @Benchmark
+    public String processPayment() {
+        return processor.processPayment(VALID_CARD, amount);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String processPayment_allCores() {
+        return processor.processPayment(VALID_CARD, amount);
+    }
+
+    // Card validation rejects the card before any ID, receipt or storage work
+    @Benchmark
+    public String processPayment_invalidCard() {
+        return processor.processPayment(INVALID_CARD, amount);
+    }
+
+    @Benchmark
+    public String generateReceipt() {
+        return ReceiptEncoder.forCurrentThread().render("TXN-0000000000001", VALID_CARD, amount);
+    }
+
+    // Baseline: the String.format rendering that ReceiptEncoder replaced
+    @Benchmark
+    public String generateReceipt_stringFormat() {
+        String maskedCard = "****-" + VALID_CARD.substring(VALID_CARD.length() - 4);
+        return String.format("Transaction: %s\nCard: %s\nAmount: $%.2f", "TXN-0000000000001", maskedCard, amount);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String nextTransactionId_allCores() {
+        return idGenerator.nextId();
+    }
+
+    // Publishes each receipt through a volatile field so the JIT cannot skip building it
+    static class LastReceiptS3StorageService implements S3StorageService {
+        private volatile String lastReceipt;
+
+        @Override
+        public boolean storeReceipt(String transactionId, String receiptContent) {
+            lastReceipt = receiptContent;
+            return true;
+        }
+    }
+}
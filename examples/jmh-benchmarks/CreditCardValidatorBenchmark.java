@@ -0,0 +1,88 @@
+package examples.avoid_testing_implementation_details;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing per-card CreditCardValidator and batch BatchCardValidator validation.
+ *
+ * Key Points:
+ * 1. isValid_perCard calls isValid(byte[], offset, length) once per packed card number
+ * 2. validateAll_scalar and validateAll_vector run the two batch paths on the same cards
+ * 3. Scores are per card (@OperationsPerInvocation), so the three are directly comparable
+ * 4. Forks add jdk.incubator.vector; without it validateAll_vector measures the scalar fallback
+ *
+ * Declared in examples.avoid_testing_implementation_details, the legal form of its example's
+ * package; see README.md for compiling it together with the example.
+ *
+ * Run with, e.g.
+ *   java --add-modules jdk.incubator.vector -jar benchmarks.jar CreditCardValidatorBenchmark -rf json
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class CreditCardValidatorBenchmark {
+    private static final int CARDS = 1_024;
+    private static final String[] CARD_NUMBERS = {
+            "4532015112830366", "5555555555554444", "6011111111111117", "4532015112830367"
+    };
+
+    // 16-digit Visa/Mastercard/Discover and 19-digit Visa
+    @Param({"16", "19"})
+    private int panLength;
+
+    private final CreditCardValidator validator = new CreditCardValidator();
+    private final BatchCardValidator batchValidator = new BatchCardValidator(validator);
+    private final BitSet valid = new BitSet(CARDS);
+    private byte[] packedPans;
+
+    @Setup
+    public void setUp() {
+        packedPans = new byte[CARDS * panLength];
+        for (int card = 0; card < CARDS; card++) {
+            String cardNumber = panLength == 16 ? CARD_NUMBERS[card % CARD_NUMBERS.length] : "4111111111111111110";
+            byte[] digits = cardNumber.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(digits, 0, packedPans, card * panLength, panLength);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public BitSet isValid_perCard() {
+        for (int card = 0; card < CARDS; card++) {
+            valid.set(card, validator.isValid(packedPans, card * panLength, panLength));
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public BitSet validateAll_scalar() {
+        batchValidator.validateAllScalar(packedPans, panLength, CARDS, valid);
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public BitSet validateAll_vector() {
+        batchValidator.validateAll(packedPans, panLength, CARDS, valid);
+        return valid;
+    }
+}
@@ -0,0 +1,50 @@
+package examples.descriptive-failure-messages;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for DescriptiveFailureMessagesExample.PaymentProcessor.processPayment.
+ *
+ * Covers the approved and declined (insufficient funds) paths, single-threaded
+ * and on every core. Run with
+ *   java -jar benchmarks.jar PaymentProcessorBenchmark -prof gc -rf json -rff payment-processor.json
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PaymentProcessorBenchmark {
+    private final DescriptiveFailureMessagesExample.PaymentProcessor processor =
+            new DescriptiveFailureMessagesExample.PaymentProcessor();
+    private final DescriptiveFailureMessagesExample.DebitCard card =
+            new DescriptiveFailureMessagesExample.DebitCard("6011123456789012", 500.00);
+
+    @Benchmark
+    public DescriptiveFailureMessagesExample.PaymentResult processPayment_approved() {
+        return processor.processPayment(card, 100.00);
+    }
+
+    @Benchmark
+    public DescriptiveFailureMessagesExample.PaymentResult processPayment_declined() {
+        return processor.processPayment(card, 1_000.00);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public DescriptiveFailureMessagesExample.PaymentResult processPayment_approved_allCores() {
+        return processor.processPayment(card, 100.00);
+    }
+}
@@ -0,0 +1,880 @@
+package examples.use-setup-methods;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating the shared fixtures loaded by SetupMethodsBeforeAllExample.
+ *
+ * Key Points:
+ * 1. BINDatabase compiles BIN ranges into sorted long[] start/end arrays plus an int[] of issuer IDs
+ * 2. Each distinct issuer is stored once, in a dictionary indexed by issuer ID
+ * 3. Lookups are a branch-light binary search over the start array, with no per-range objects
+ * 4. CardNetworkRules and BINDatabase are immutable, so one instance can be shared across tests
+ * 5. writeBinary saves the compiled index; BINDatabase.open memory-maps it instead of parsing the CSV
+ */
+
+// ============================================================================
+// CARD NETWORKS AND ISSUERS
+// ============================================================================
+
+enum CardNetwork {
+    VISA, MASTERCARD, AMEX, DISCOVER
+}
+
+/**
+ * Bank that issued a card, as listed in the BIN database.
+ */
+final class CardIssuer {
+    private final String bankName;
+    private final CardNetwork network;
+
+    public CardIssuer(String bankName, CardNetwork network) {
+        this.bankName = bankName;
+        this.network = network;
+    }
+
+    public String getBankName() { return bankName; }
+    public CardNetwork getNetwork() { return network; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CardIssuer)) return false;
+        CardIssuer other = (CardIssuer) o;
+        return bankName.equals(other.bankName) && network == other.network;
+    }
+
+    @Override
+    public int hashCode() {
+        return bankName.hashCode() * 31 + network.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return bankName + " (" + network + ")";
+    }
+}
+
+// ============================================================================
+// CARD NETWORK RULES
+// ============================================================================
+
+/**
+ * Prefix and length rules of each card network, loaded from a JSON file such as
+ *
+ * <pre>
+ * [
+ *   {"network": "VISA", "prefixes": ["4"], "lengths": [13, 16, 19]},
+ *   {"network": "MASTERCARD", "prefixes": ["51-55", "2221-2720"], "lengths": [16]}
+ * ]
+ * </pre>
+ *
+ * Only this flat shape is read: one object per network with string prefixes,
+ * each a single prefix or an inclusive range of equal-length prefixes.
+ */
+final class CardNetworkRules {
+    private static final Pattern RULE = Pattern.compile("\\{([^}]*)}");
+    private static final Pattern NETWORK = Pattern.compile("\"network\"\\s*:\\s*\"(\\w+)\"");
+    private static final Pattern PREFIXES = Pattern.compile("\"prefixes\"\\s*:\\s*\\[([^\\]]*)]");
+    private static final Pattern LENGTHS = Pattern.compile("\"lengths\"\\s*:\\s*\\[([^\\]]*)]");
+    private static final Pattern PREFIX = Pattern.compile("\"(\\d+)(?:-(\\d+))?\"");
+
+    private final List<Rule> rules;
+
+    CardNetworkRules(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    public static CardNetworkRules loadFromFile(String path) {
+        return loadFromFile(Path.of(path));
+    }
+
+    public static CardNetworkRules loadFromFile(Path path) {
+        try {
+            return parse(Files.readString(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read card network rules from " + path, e);
+        }
+    }
+
+    static CardNetworkRules parse(String json) {
+        List<Rule> rules = new ArrayList<>();
+        Matcher rule = RULE.matcher(json);
+        while (rule.find()) {
+            String body = rule.group(1);
+            CardNetwork network = CardNetwork.valueOf(find(NETWORK, body, rule.group()));
+            List<int[]> prefixes = new ArrayList<>();
+            Matcher prefix = PREFIX.matcher(find(PREFIXES, body, rule.group()));
+            while (prefix.find()) {
+                String low = prefix.group(1);
+                String high = prefix.group(2) != null ? prefix.group(2) : low;
+                if (low.length() != high.length()) {
+                    throw new IllegalArgumentException("Prefix range bounds differ in length: " + prefix.group());
+                }
+                prefixes.add(new int[] {low.length(), Integer.parseInt(low), Integer.parseInt(high)});
+            }
+            boolean[] lengths = new boolean[CreditCardValidator.MAX_LENGTH + 1];
+            for (String length : find(LENGTHS, body, rule.group()).split(",")) {
+                int value = Integer.parseInt(length.trim());
+                if (value < CreditCardValidator.MIN_LENGTH || value > CreditCardValidator.MAX_LENGTH) {
+                    throw new IllegalArgumentException("Card length " + value + " is outside "
+                            + CreditCardValidator.MIN_LENGTH + " to " + CreditCardValidator.MAX_LENGTH
+                            + " in " + rule.group());
+                }
+                lengths[value] = true;
+            }
+            rules.add(new Rule(network, prefixes.toArray(new int[0][]), lengths));
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("No card network rules found");
+        }
+        return new CardNetworkRules(rules);
+    }
+
+    private static String find(Pattern field, String body, String rule) {
+        Matcher matcher = field.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Missing " + field.pattern().split("\"")[1] + " in " + rule);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * @return the network whose prefix and length rules match, or null if none does
+     */
+    public CardNetwork detectNetwork(CharSequence cardNumber) {
+        for (Rule rule : rules) {
+            if (rule.matches(cardNumber)) {
+                return rule.network;
+            }
+        }
+        return null;
+    }
+
+    static final class Rule {
+        private final CardNetwork network;
+        // {digits, low, high} per prefix range
+        private final int[][] prefixes;
+        private final boolean[] lengths;
+
+        Rule(CardNetwork network, int[][] prefixes, boolean[] lengths) {
+            this.network = network;
+            this.prefixes = prefixes;
+            this.lengths = lengths;
+        }
+
+        boolean matches(CharSequence cardNumber) {
+            int length = cardNumber.length();
+            if (length >= lengths.length || !lengths[length]) {
+                return false;
+            }
+            for (int[] prefix : prefixes) {
+                int value = 0;
+                for (int i = 0; i < prefix[0]; i++) {
+                    value = value * 10 + cardNumber.charAt(i) - '0';
+                }
+                if (value >= prefix[1] && value <= prefix[2]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
+
+// ============================================================================
+// BIN DATABASE
+// ============================================================================
+
+/**
+ * Issuer lookup by BIN (the leading digits of a card number), loaded from a CSV of
+ * {@code bin_start,bin_end,bank_name,network} rows, e.g. {@code 453200,453299,Chase Bank,VISA}.
+ *
+ * Each range is widened to KEY_DIGITS digits, padding the start with 0s and
+ * the end with 9s, so 6- and 8-digit BINs share one key space. Ranges are held
+ * in three parallel arrays sorted by start: starts, ends and issuerIds. Issuers
+ * are deduplicated into a dictionary, so a million ranges from a few thousand
+ * banks cost 20 bytes each plus the dictionary, instead of a range object,
+ * boxed bounds and a String per row.
+ *
+ * Ranges must not overlap; loading fails on the first overlap.
+ *
+ * writeBinary saves the compiled arrays in the little-endian layout below, and
+ * open maps that file and serves lookups from LongBuffer/IntBuffer views of the
+ * mapping, so startup reads only the header and the issuer dictionary. A
+ * database loaded from CSV keeps plain long[]/int[] arrays instead, so the heap
+ * path pays no buffer bounds checks or byte-order reads. Pages
+ * of the range arrays are loaded by the binary search as it touches them, and
+ * JVMs on one host that open the same file share one page-cache copy.
+ *
+ * <pre>
+ * int magic, int version, int rangeCount, int issuerCount
+ * issuerCount x (byte network ordinal, short name length, UTF-8 name)
+ * zero padding to a multiple of 8 bytes
+ * long[rangeCount] starts, long[rangeCount] ends, int[rangeCount] issuerIds
+ * </pre>
+ */
+final class BINDatabase {
+    static final int KEY_DIGITS = 10;
+    private static final long[] PAD = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000,
+            100_000_000, 1_000_000_000, 10_000_000_000L};
+
+    // "BIN1"
+    private static final int MAGIC = 0x42494E31;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    // HeapRanges after loadFromCSV, MappedRanges after open
+    private final Ranges ranges;
+    private final CardIssuer[] issuers;
+
+    private BINDatabase(Ranges ranges, CardIssuer[] issuers) {
+        this.ranges = ranges;
+        this.issuers = issuers;
+    }
+
+    public static BINDatabase loadFromCSV(String path) {
+        return loadFromCSV(Path.of(path));
+    }
+
+    public static BINDatabase loadFromCSV(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Builder builder = new Builder();
+            String line = reader.readLine();
+            int lineNumber = 1;
+            if (line != null && !line.isEmpty() && !Character.isDigit(line.charAt(0))) {
+                line = reader.readLine();
+                lineNumber++;
+            }
+            for (; line != null; line = reader.readLine(), lineNumber++) {
+                if (!line.isBlank()) {
+                    builder.addRow(line, lineNumber);
+                }
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read BIN ranges from " + path, e);
+        }
+    }
+
+    // e.g. bin-ranges.bin, compiled from bin-ranges.csv with writeBinary
+    public static BINDatabase open(String path) {
+        return open(Path.of(path));
+    }
+
+    /**
+     * Maps a file written by writeBinary. The mapping stays valid after the file
+     * is replaced or deleted, and is released when the database is garbage collected.
+     */
+    public static BINDatabase open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            if (file.limit() < HEADER_BYTES || file.getInt() != MAGIC || file.getInt() != VERSION) {
+                throw new IllegalArgumentException("Not a version " + VERSION + " BIN database file: " + path);
+            }
+            int rangeCount = file.getInt();
+            int issuerCount = file.getInt();
+            if (rangeCount < 0 || issuerCount < 0) {
+                throw new IllegalArgumentException("Corrupt BIN database file: " + path);
+            }
+            CardIssuer[] issuers = new CardIssuer[issuerCount];
+            CardNetwork[] networks = CardNetwork.values();
+            for (int i = 0; i < issuerCount; i++) {
+                CardNetwork network = networks[file.get()];
+                byte[] name = new byte[file.getShort() & 0xFFFF];
+                file.get(name);
+                issuers[i] = new CardIssuer(new String(name, StandardCharsets.UTF_8), network);
+            }
+            int rangesOffset = align8(file.position());
+            if ((long) rangesOffset + 20L * rangeCount != file.limit()) {
+                throw new IllegalArgumentException("Truncated or corrupt BIN database file: " + path);
+            }
+            return new BINDatabase(new MappedRanges(
+                    slice(file, rangesOffset, 8 * rangeCount).asLongBuffer(),
+                    slice(file, rangesOffset + 8 * rangeCount, 8 * rangeCount).asLongBuffer(),
+                    slice(file, rangesOffset + 16 * rangeCount, 4 * rangeCount).asIntBuffer()),
+                    issuers);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map BIN database " + path, e);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            // A network ordinal or name length in the dictionary that does not fit
+            throw new IllegalArgumentException("Corrupt BIN database file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes the compiled index for open. The file is written to a new temporary
+     * file in path's directory and moved over path, so a concurrent open sees
+     * either the old file or the new one, and concurrent writers never share a
+     * temporary file.
+     */
+    public void writeBinary(Path path) {
+        int rangeCount = getRangeCount();
+        byte[][] names = new byte[issuers.length][];
+        int dictionaryBytes = 0;
+        for (int i = 0; i < issuers.length; i++) {
+            names[i] = issuers[i].getBankName().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("Bank name longer than 65535 bytes: " + issuers[i]);
+            }
+            dictionaryBytes += 3 + names[i].length;
+        }
+        int rangesOffset = align8(HEADER_BYTES + dictionaryBytes);
+        long fileBytes = rangesOffset + 20L * rangeCount;
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp;
+        try {
+            temp = Files.createTempFile(directory, path.getFileName() + ".", ".tmp");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a temporary file in " + directory, e);
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            file.putInt(MAGIC).putInt(VERSION).putInt(rangeCount).putInt(issuers.length);
+            for (int i = 0; i < issuers.length; i++) {
+                file.put((byte) issuers[i].getNetwork().ordinal()).putShort((short) names[i].length).put(names[i]);
+            }
+            ranges.copyTo(slice(file, rangesOffset, 8 * rangeCount).asLongBuffer(),
+                    slice(file, rangesOffset + 8 * rangeCount, 8 * rangeCount).asLongBuffer(),
+                    slice(file, rangesOffset + 16 * rangeCount, 4 * rangeCount).asIntBuffer());
+            file.force();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Cannot write BIN database " + path + " via " + temp, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort: the original failure is the one to report
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, int offset, int length) {
+        return file.duplicate().position(offset).limit(offset + length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    /**
+     * @return the issuer of the range containing the card number's BIN, or null if none does
+     */
+    public CardIssuer lookup(CharSequence cardNumber) {
+        long key = key(cardNumber);
+        if (key < 0) {
+            return null;
+        }
+        int issuerId = ranges.issuerOf(key);
+        return issuerId < 0 ? null : issuers[issuerId];
+    }
+
+    public int getRangeCount() { return ranges.size(); }
+    public int getIssuerCount() { return issuers.length; }
+
+    // First KEY_DIGITS digits as a number, or -1 if the card is too short or has a non-digit there
+    static long key(CharSequence cardNumber) {
+        if (cardNumber == null || cardNumber.length() < KEY_DIGITS) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < KEY_DIGITS; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Ranges sorted by start, as starts, ends and issuerIds in parallel.
+     * issuerOf finds the last range whose start is <= key with a binary search
+     * that has a fixed trip count and a conditional move body.
+     */
+    private interface Ranges {
+        int size();
+
+        // Issuer ID of the range containing key, or -1 if none does
+        int issuerOf(long key);
+
+        void copyTo(LongBuffer starts, LongBuffer ends, IntBuffer issuerIds);
+    }
+
+    private static final class HeapRanges implements Ranges {
+        private final long[] starts;
+        private final long[] ends;
+        private final int[] issuerIds;
+
+        HeapRanges(long[] starts, long[] ends, int[] issuerIds) {
+            this.starts = starts;
+            this.ends = ends;
+            this.issuerIds = issuerIds;
+        }
+
+        @Override
+        public int size() { return starts.length; }
+
+        @Override
+        public int issuerOf(long key) {
+            if (starts.length == 0) {
+                return -1;
+            }
+            int base = 0;
+            for (int n = starts.length; n > 1; n -= n >>> 1) {
+                int half = n >>> 1;
+                base = starts[base + half] <= key ? base + half : base;
+            }
+            return starts[base] <= key && key <= ends[base] ? issuerIds[base] : -1;
+        }
+
+        @Override
+        public void copyTo(LongBuffer starts, LongBuffer ends, IntBuffer issuerIds) {
+            starts.put(this.starts);
+            ends.put(this.ends);
+            issuerIds.put(this.issuerIds);
+        }
+    }
+
+    // Absolute gets only, so the views can be shared by concurrent lookups
+    private static final class MappedRanges implements Ranges {
+        private final LongBuffer starts;
+        private final LongBuffer ends;
+        private final IntBuffer issuerIds;
+
+        MappedRanges(LongBuffer starts, LongBuffer ends, IntBuffer issuerIds) {
+            this.starts = starts;
+            this.ends = ends;
+            this.issuerIds = issuerIds;
+        }
+
+        @Override
+        public int size() { return starts.limit(); }
+
+        @Override
+        public int issuerOf(long key) {
+            int rangeCount = starts.limit();
+            if (rangeCount == 0) {
+                return -1;
+            }
+            int base = 0;
+            for (int n = rangeCount; n > 1; n -= n >>> 1) {
+                int half = n >>> 1;
+                base = starts.get(base + half) <= key ? base + half : base;
+            }
+            return starts.get(base) <= key && key <= ends.get(base) ? issuerIds.get(base) : -1;
+        }
+
+        @Override
+        public void copyTo(LongBuffer starts, LongBuffer ends, IntBuffer issuerIds) {
+            starts.put(this.starts.duplicate().clear());
+            ends.put(this.ends.duplicate().clear());
+            issuerIds.put(this.issuerIds.duplicate().clear());
+        }
+    }
+
+    /**
+     * Collects CSV rows into growable primitive arrays, then sorts and checks them once.
+     * Rows that share an issuer share its first CardIssuer, and with it one bank name String.
+     */
+    static final class Builder {
+        // Starts are below 10^KEY_DIGITS < 2^34, so start and row index pack into one non-negative long
+        private static final int INDEX_BITS = 29;
+        private static final int MAX_RANGES = 1 << INDEX_BITS;
+
+        private long[] starts = new long[1024];
+        private long[] ends = new long[1024];
+        private int[] issuerIds = new int[1024];
+        private int size;
+        private final Map<CardIssuer, Integer> issuerIdsByIssuer = new HashMap<>();
+        private final List<CardIssuer> issuers = new ArrayList<>();
+
+        void addRow(String line, int lineNumber) {
+            int first = line.indexOf(',');
+            int second = line.indexOf(',', first + 1);
+            int last = line.lastIndexOf(',');
+            if (first < 0 || second < 0 || last <= second) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected bin_start,bin_end,bank_name,network");
+            }
+            try {
+                String start = line.substring(0, first).trim();
+                String end = line.substring(first + 1, second).trim();
+                // Bank names may contain commas; the network is always the last field
+                String bankName = line.substring(second + 1, last).trim();
+                CardNetwork network = CardNetwork.valueOf(line.substring(last + 1).trim());
+                add(widen(start, 0), widen(end, 9), bankName, network);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        void add(long start, long end, String bankName, CardNetwork network) {
+            if (start > end) {
+                throw new IllegalArgumentException("Range start " + start + " is after end " + end);
+            }
+            if (size == MAX_RANGES) {
+                throw new IllegalArgumentException("More than " + MAX_RANGES + " BIN ranges");
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                issuerIds = Arrays.copyOf(issuerIds, size * 2);
+            }
+            CardIssuer issuer = new CardIssuer(bankName, network);
+            Integer issuerId = issuerIdsByIssuer.get(issuer);
+            if (issuerId == null) {
+                issuerId = issuers.size();
+                issuers.add(issuer);
+                issuerIdsByIssuer.put(issuer, issuerId);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            issuerIds[size] = issuerId;
+            size++;
+        }
+
+        BINDatabase build() {
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = starts[i] << INDEX_BITS | i;
+            }
+            if (!isSorted()) {
+                // Sorting by start, then by row index, in one primitive sort
+                Arrays.sort(order);
+            }
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            int[] sortedIssuerIds = new int[size];
+            int mask = MAX_RANGES - 1;
+            for (int i = 0; i < size; i++) {
+                int row = (int) order[i] & mask;
+                sortedStarts[i] = starts[row];
+                sortedEnds[i] = ends[row];
+                sortedIssuerIds[i] = issuerIds[row];
+                if (i > 0 && sortedStarts[i] <= sortedEnds[i - 1]) {
+                    throw new IllegalArgumentException("BIN range starting " + sortedStarts[i]
+                            + " overlaps range ending " + sortedEnds[i - 1]);
+                }
+            }
+            return new BINDatabase(new HeapRanges(sortedStarts, sortedEnds, sortedIssuerIds),
+                    issuers.toArray(new CardIssuer[0]));
+        }
+
+        // BIN files are usually sorted already, which skips the sort
+        private boolean isSorted() {
+            for (int i = 1; i < size; i++) {
+                if (starts[i] < starts[i - 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long widen(String bin, int padDigit) {
+            if (bin.isEmpty() || bin.length() > KEY_DIGITS || !bin.chars().allMatch(Character::isDigit)) {
+                throw new IllegalArgumentException("BIN must be 1 to " + KEY_DIGITS + " digits: " + bin);
+            }
+            long padding = PAD[KEY_DIGITS - bin.length()];
+            return Long.parseLong(bin) * padding + (padDigit == 9 ? padding - 1 : 0);
+        }
+    }
+}
+
+// ============================================================================
+// CREDIT CARD VALIDATOR
+// ============================================================================
+
+/**
+ * Validates card numbers against shared CardNetworkRules and looks up their issuer in a BINDatabase.
+ *
+ * Rules and database are read from a CardDataSnapshot, fetched once per call,
+ * so a ReloadableCardData swap never mixes old rules with a new database
+ * within one call.
+ *
+ * The Luhn check reads the card number once, left to right, and adds each
+ * digit's contribution from LUHN_TABLE, so it neither branches on the digit's
+ * position nor allocates; the loop stops at the first non-digit.
+ */
+class CreditCardValidator {
+    static final int MIN_LENGTH = 13;
+    static final int MAX_LENGTH = 19;
+    // addDigit's sum once a non-digit was seen; a real sum is never negative
+    private static final int NOT_DIGITS = -1;
+
+    // [0..9]: digit as is; [10..19]: digit doubled, with 10..18 reduced to 1..9
+    private static final int[] LUHN_TABLE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9,
+            0, 2, 4, 6, 8, 1, 3, 5, 7, 9
+    };
+
+    private final Supplier<CardDataSnapshot> cardData;
+
+    public CreditCardValidator(CardNetworkRules networkRules, BINDatabase binDatabase) {
+        CardDataSnapshot snapshot = new CardDataSnapshot(networkRules, binDatabase);
+        this.cardData = () -> snapshot;
+    }
+
+    // e.g. a ReloadableCardData
+    public CreditCardValidator(Supplier<CardDataSnapshot> cardData) {
+        this.cardData = cardData;
+    }
+
+    public boolean isValid(String cardNumber) {
+        return isValid(cardNumber, cardData.get().getNetworkRules());
+    }
+
+    /**
+     * @return the card's issuer, or null if its BIN is not in the database
+     */
+    public CardIssuer identifyIssuer(String cardNumber) {
+        return cardData.get().getBinDatabase().lookup(cardNumber);
+    }
+
+    /**
+     * @return the card's issuer, or null if the card is invalid or its BIN is not in the database
+     */
+    public CardIssuer identifyIssuerIfValid(String cardNumber) {
+        CardDataSnapshot snapshot = cardData.get();
+        return isValid(cardNumber, snapshot.getNetworkRules()) ? snapshot.getBinDatabase().lookup(cardNumber) : null;
+    }
+
+    private static boolean isValid(String cardNumber, CardNetworkRules networkRules) {
+        if (cardNumber == null || cardNumber.length() < MIN_LENGTH || cardNumber.length() > MAX_LENGTH) {
+            return false;
+        }
+        int length = cardNumber.length();
+        int sum = 0;
+        for (int i = 0; i < length && sum != NOT_DIGITS; i++) {
+            sum = addDigit(sum, i, length, cardNumber.charAt(i));
+        }
+        return sum != NOT_DIGITS && sum % 10 == 0 && networkRules.detectNetwork(cardNumber) != null;
+    }
+
+    /**
+     * Adds the Luhn contribution of character index of a length-digit card number to sum.
+     * @return the new sum, or NOT_DIGITS if the character is not an ASCII digit
+     */
+    private static int addDigit(int sum, int index, int length, int character) {
+        int digit = character - '0';
+        if (digit < 0 || digit > 9) {
+            return NOT_DIGITS;
+        }
+        return sum + LUHN_TABLE[luhnIndex(length - index, digit)];
+    }
+
+    // Digits at an even distance from the end (counting the check digit as 1) are doubled
+    private static int luhnIndex(int distanceFromEnd, int digit) {
+        return ((distanceFromEnd + 1) & 1) * 10 + digit;
+    }
+}
+
+// ============================================================================
+// TESTS FOR BIN DATABASE
+// ============================================================================
+
+class BINDatabaseTest {
+    private static final String CSV = String.join("\n",
+            "bin_start,bin_end,bank_name,network",
+            "453200,453299,Chase Bank,VISA",
+            "400000,400099,Bank, N.A.,VISA",
+            "55555555,55555555,Chase Bank,MASTERCARD",
+            "601100,601109,Discover Bank,DISCOVER");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void lookup_binInsideRange_returnsIssuerOfThatRange() throws IOException {
+        // Arrange
+        BINDatabase database = load(CSV);
+
+        // Act & Assert
+        assertEquals(new CardIssuer("Chase Bank", CardNetwork.VISA), database.lookup("4532015112830366"));
+        assertEquals(new CardIssuer("Chase Bank", CardNetwork.MASTERCARD), database.lookup("5555555555554444"));
+        assertEquals(new CardIssuer("Bank, N.A.", CardNetwork.VISA), database.lookup("4000991234567890"));
+        assertEquals(new CardIssuer("Discover Bank", CardNetwork.DISCOVER), database.lookup("6011091111111117"));
+    }
+
+    @Test
+    void lookup_binOutsideEveryRange_returnsNull() throws IOException {
+        // Arrange
+        BINDatabase database = load(CSV);
+
+        // Act & Assert
+        assertNull(database.lookup("4533001112830366"), "Just past a range end");
+        assertNull(database.lookup("5555555455554444"), "Just before an 8-digit range");
+        assertNull(database.lookup("0000000000000000"), "Before the first range");
+        assertNull(database.lookup("9999999999999999"), "After the last range");
+        assertNull(database.lookup("45320"), "Shorter than a BIN key");
+    }
+
+    @Test
+    void loadFromCSV_unsortedRows_storesEachIssuerOnce() throws IOException {
+        // Arrange
+        String csv = String.join("\n",
+                "400050,400059,Citibank,VISA",
+                "400040,400049,Chase Bank,VISA",
+                "400030,400039,Citibank,VISA",
+                "400020,400029,Chase Bank,VISA",
+                "400010,400019,Citibank,VISA",
+                "400000,400009,Chase Bank,VISA");
+
+        // Act
+        BINDatabase database = load(csv);
+
+        // Assert
+        assertEquals(6, database.getRangeCount());
+        assertEquals(2, database.getIssuerCount());
+        assertEquals("Citibank", database.lookup("4000551111111111").getBankName());
+        assertEquals("Chase Bank", database.lookup("4000001111111111").getBankName());
+        assertEquals("Citibank", database.lookup("4000191111111111").getBankName());
+    }
+
+    @Test
+    void loadFromCSV_overlappingRanges_throwsException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> load("453200,453299,Chase Bank,VISA\n45329900,45330000,Citibank,VISA"));
+        assertTrue(exception.getMessage().contains("overlaps"), "Expected overlap in: " + exception.getMessage());
+    }
+
+    @Test
+    void parse_cardLengthAboveMaximum_throwsIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> CardNetworkRules.parse(
+                        "[{\"network\": \"VISA\", \"prefixes\": [\"4\"], \"lengths\": [16, 20]}]"));
+        assertTrue(exception.getMessage().contains("20"), "Expected the length in: " + exception.getMessage());
+    }
+
+    @Test
+    void validator_sharedRulesAndDatabase_validatesAndIdentifiesIssuer() throws IOException {
+        // Arrange
+        CardNetworkRules rules = CardNetworkRules.parse(
+                "[{\"network\": \"VISA\", \"prefixes\": [\"4\"], \"lengths\": [13, 16, 19]},"
+                        + " {\"network\": \"MASTERCARD\", \"prefixes\": [\"51-55\", \"2221-2720\"], \"lengths\": [16]}]");
+        CreditCardValidator validator = new CreditCardValidator(rules, load(CSV));
+
+        // Act & Assert
+        assertTrue(validator.isValid("4532015112830366"));
+        assertTrue(validator.isValid("2221000000000009"));
+        assertFalse(validator.isValid("4532015112830367"), "Bad checksum");
+        assertFalse(validator.isValid("6011111111111117"), "No Discover rule");
+        assertFalse(validator.isValid("45320151128303x6"), "Non-digit");
+        assertEquals(CardNetwork.VISA, validator.identifyIssuer("4532015112830366").getNetwork());
+    }
+
+    @Test
+    void open_fileWrittenByWriteBinary_answersLookupsLikeCsvDatabase() throws IOException {
+        // Arrange
+        BINDatabase fromCsv = load(CSV);
+        Path binary = tempDir.resolve("bin-ranges.bin");
+        fromCsv.writeBinary(binary);
+
+        // Act
+        BINDatabase mapped = BINDatabase.open(binary);
+
+        // Assert
+        assertEquals(fromCsv.getRangeCount(), mapped.getRangeCount());
+        assertEquals(fromCsv.getIssuerCount(), mapped.getIssuerCount());
+        assertEquals(new CardIssuer("Chase Bank", CardNetwork.VISA), mapped.lookup("4532015112830366"));
+        assertEquals(new CardIssuer("Chase Bank", CardNetwork.MASTERCARD), mapped.lookup("5555555555554444"));
+        assertEquals(new CardIssuer("Bank, N.A.", CardNetwork.VISA), mapped.lookup("4000991234567890"));
+        assertEquals(new CardIssuer("Discover Bank", CardNetwork.DISCOVER), mapped.lookup("6011091111111117"));
+        assertNull(mapped.lookup("4533001112830366"), "Just past a range end");
+        assertNull(mapped.lookup("0000000000000000"), "Before the first range");
+        assertNull(mapped.lookup("9999999999999999"), "After the last range");
+    }
+
+    // Fails when bin-ranges.csv changed without regenerating bin-ranges.bin
+    @Test
+    void open_shippedBinaryFile_matchesShippedCsv() {
+        // Arrange
+        BINDatabase fromCsv = BINDatabase.loadFromCSV("bin-ranges.csv");
+
+        // Act
+        BINDatabase mapped = BINDatabase.open("bin-ranges.bin");
+
+        // Assert
+        assertEquals(fromCsv.getRangeCount(), mapped.getRangeCount());
+        assertEquals(fromCsv.getIssuerCount(), mapped.getIssuerCount());
+        assertEquals(fromCsv.lookup("4532015112830366"), mapped.lookup("4532015112830366"));
+        assertEquals(fromCsv.lookup("378282246310005"), mapped.lookup("378282246310005"));
+    }
+
+    @Test
+    void writeBinary_existingFile_replacesItAndLeavesNoTemporaryFile() throws IOException {
+        // Arrange
+        Path binary = tempDir.resolve("bin-ranges.bin");
+        Files.writeString(binary, "previous contents");
+
+        // Act
+        load(CSV).writeBinary(binary);
+
+        // Assert
+        assertEquals(4, BINDatabase.open(binary).getRangeCount());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of("bin-ranges.bin", "bin-ranges.csv"), files.map(file -> file.getFileName().toString())
+                    .sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void open_truncatedOrForeignFile_throwsException() throws IOException {
+        // Arrange
+        Path binary = tempDir.resolve("bin-ranges.bin");
+        load(CSV).writeBinary(binary);
+        Path truncated = tempDir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(Files.readAllBytes(binary), (int) Files.size(binary) - 4));
+        Path csv = tempDir.resolve("bin-ranges.csv");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> BINDatabase.open(truncated));
+        assertThrows(IllegalArgumentException.class, () -> BINDatabase.open(csv));
+    }
+
+    private BINDatabase load(String csv) throws IOException {
+        Path file = tempDir.resolve("bin-ranges.csv");
+        Files.writeString(file, csv);
+        return BINDatabase.loadFromCSV(file);
+    }
+}
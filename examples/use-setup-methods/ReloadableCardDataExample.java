@@ -0,0 +1,278 @@
+package examples.use-setup-methods;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Example demonstrating hot reload of CardNetworkRules and BINDatabase without pausing validation.
+ *
+ * Key Points:
+ * 1. CardDataSnapshot pairs one version of the rules with one version of the BIN database
+ * 2. ReloadableCardData loads and checks a new snapshot on an executor, then swaps it in atomically
+ * 3. CreditCardValidator reads the current snapshot once per call, so calls never block or mix versions
+ * 4. A snapshot that fails to load or is rejected leaves the current one in place
+ */
+
+// ============================================================================
+// RELOADABLE CARD DATA
+// ============================================================================
+
+/**
+ * Immutable pair of network rules and BIN database that validations read together.
+ */
+final class CardDataSnapshot {
+    private final CardNetworkRules networkRules;
+    private final BINDatabase binDatabase;
+
+    public CardDataSnapshot(CardNetworkRules networkRules, BINDatabase binDatabase) {
+        this.networkRules = networkRules;
+        this.binDatabase = binDatabase;
+    }
+
+    public static CardDataSnapshot load(Path rulesFile, Path binFile) {
+        return new CardDataSnapshot(CardNetworkRules.loadFromFile(rulesFile), BINDatabase.open(binFile));
+    }
+
+    public CardNetworkRules getNetworkRules() { return networkRules; }
+    public BINDatabase getBinDatabase() { return binDatabase; }
+}
+
+/**
+ * Holder of the current CardDataSnapshot that can be reloaded while validations run.
+ *
+ * get() is a single volatile read, so validators never wait for a reload.
+ * reloadAsync runs the loader on the given executor, checks the result with
+ * the acceptance test and only then publishes it; until then every caller
+ * keeps seeing the previous snapshot. Reloads are single-flight: a reload
+ * requested while one is running joins it, so call reloadAsync again after it
+ * completes to pick up changes made since it started.
+ */
+final class ReloadableCardData implements Supplier<CardDataSnapshot> {
+    private final Supplier<CardDataSnapshot> loader;
+    private final Predicate<CardDataSnapshot> acceptance;
+    private final AtomicReference<CardDataSnapshot> current;
+    private final AtomicReference<CompletableFuture<CardDataSnapshot>> reloading = new AtomicReference<>();
+
+    // Rejects a snapshot with an empty BIN database, e.g. from a truncated file
+    public ReloadableCardData(Supplier<CardDataSnapshot> loader) {
+        this(loader, snapshot -> snapshot.getBinDatabase().getRangeCount() > 0);
+    }
+
+    /**
+     * Loads the first snapshot on the calling thread, so a bad initial file fails construction.
+     */
+    public ReloadableCardData(Supplier<CardDataSnapshot> loader, Predicate<CardDataSnapshot> acceptance) {
+        this.loader = loader;
+        this.acceptance = acceptance;
+        this.current = new AtomicReference<>(loadAndCheck());
+    }
+
+    @Override
+    public CardDataSnapshot get() {
+        return current.get();
+    }
+
+    /**
+     * @return the reload's future, completed with the new snapshot once it is published,
+     *         or exceptionally if it failed to load or was rejected
+     */
+    public CompletableFuture<CardDataSnapshot> reloadAsync(Executor executor) {
+        while (true) {
+            CompletableFuture<CardDataSnapshot> running = reloading.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<CardDataSnapshot> reload = new CompletableFuture<>();
+            if (reloading.compareAndSet(null, reload)) {
+                try {
+                    executor.execute(() -> reload(reload));
+                } catch (RejectedExecutionException e) {
+                    finish(reload, null, e);
+                }
+                return reload;
+            }
+        }
+    }
+
+    // Any Throwable, Errors included, fails the future; the finally block ends the reload either way
+    private void reload(CompletableFuture<CardDataSnapshot> reload) {
+        CardDataSnapshot snapshot = null;
+        Throwable error = null;
+        try {
+            snapshot = loadAndCheck();
+            current.set(snapshot);
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            finish(reload, snapshot, error);
+        }
+    }
+
+    private CardDataSnapshot loadAndCheck() {
+        CardDataSnapshot snapshot = loader.get();
+        if (!acceptance.test(snapshot)) {
+            throw new IllegalStateException("Loaded card data failed the acceptance check");
+        }
+        return snapshot;
+    }
+
+    // Clears the in-flight reload first, so a caller reacting to completion can start the next one
+    private void finish(CompletableFuture<CardDataSnapshot> reload, CardDataSnapshot snapshot, Throwable error) {
+        reloading.set(null);
+        if (error == null) {
+            reload.complete(snapshot);
+        } else {
+            reload.completeExceptionally(error);
+        }
+    }
+}
+
+// ============================================================================
+// TESTS FOR HOT RELOAD
+// ============================================================================
+
+class ReloadableCardDataTest {
+    private static final String CHASE_CARD = "4532015112830366";
+    private static final String RULES = "[{\"network\": \"VISA\", \"prefixes\": [\"4\"], \"lengths\": [13, 16, 19]}]";
+
+    @TempDir
+    Path tempDir;
+    private Path rulesFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        rulesFile = tempDir.resolve("card-network-rules.json");
+        Files.writeString(rulesFile, RULES);
+    }
+
+    @Test
+    void reloadAsync_binFileReplaced_validatorSeesNewIssuer() throws IOException {
+        // Arrange
+        Path binFile = writeBinFile("453200,453299,Chase Bank,VISA");
+        ReloadableCardData cardData = new ReloadableCardData(() -> CardDataSnapshot.load(rulesFile, binFile));
+        CreditCardValidator validator = new CreditCardValidator(cardData);
+        assertEquals("Chase Bank", validator.identifyIssuer(CHASE_CARD).getBankName());
+        writeBinFile("453200,453299,Citibank,VISA");
+
+        // Act
+        cardData.reloadAsync(Runnable::run).join();
+
+        // Assert
+        assertEquals("Citibank", validator.identifyIssuer(CHASE_CARD).getBankName());
+    }
+
+    @Test
+    void reloadAsync_newDataRejected_keepsCurrentSnapshot() throws IOException {
+        // Arrange
+        Path binFile = writeBinFile("453200,453299,Chase Bank,VISA");
+        ReloadableCardData cardData = new ReloadableCardData(() -> CardDataSnapshot.load(rulesFile, binFile));
+        CardDataSnapshot before = cardData.get();
+        writeBinFile("");
+
+        // Act
+        CompletableFuture<CardDataSnapshot> reload = cardData.reloadAsync(Runnable::run);
+
+        // Assert
+        CompletionException exception = assertThrows(CompletionException.class, reload::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause(), "Expected rejection");
+        assertSame(before, cardData.get());
+    }
+
+    @Test
+    void reloadAsync_loaderThrowsError_failsReloadAndAllowsNextOne() throws IOException {
+        // Arrange
+        Path binFile = writeBinFile("453200,453299,Chase Bank,VISA");
+        AtomicInteger loads = new AtomicInteger();
+        ReloadableCardData cardData = new ReloadableCardData(() -> {
+            if (loads.incrementAndGet() == 2) {
+                throw new ExceptionInInitializerError("BIN loader failed to initialize");
+            }
+            return CardDataSnapshot.load(rulesFile, binFile);
+        });
+        writeBinFile("453200,453299,Citibank,VISA");
+
+        // Act
+        CompletableFuture<CardDataSnapshot> failed = cardData.reloadAsync(Runnable::run);
+        CompletableFuture<CardDataSnapshot> next = cardData.reloadAsync(Runnable::run);
+
+        // Assert
+        CompletionException exception = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(ExceptionInInitializerError.class, exception.getCause());
+        assertNotSame(failed, next, "Expected a new reload once the failed one ended");
+        assertEquals("Citibank", next.join().getBinDatabase().lookup(CHASE_CARD).getBankName());
+    }
+
+    @Test
+    void reloadAsync_loadInProgress_validationsUseCurrentSnapshotWithoutWaiting() throws Exception {
+        // Arrange
+        Path binFile = writeBinFile("453200,453299,Chase Bank,VISA");
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ReloadableCardData cardData = new ReloadableCardData(() -> {
+            if (loads.incrementAndGet() > 1) {
+                loadStarted.countDown();
+                await(releaseLoad);
+            }
+            return CardDataSnapshot.load(rulesFile, binFile);
+        });
+        CreditCardValidator validator = new CreditCardValidator(cardData);
+        writeBinFile("453200,453299,Citibank,VISA");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            CompletableFuture<CardDataSnapshot> reload = cardData.reloadAsync(executor);
+            CompletableFuture<CardDataSnapshot> joined = cardData.reloadAsync(executor);
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS), "Expected reload to start");
+            CardIssuer duringReload = validator.identifyIssuerIfValid(CHASE_CARD);
+            releaseLoad.countDown();
+            reload.get(5, TimeUnit.SECONDS);
+
+            // Assert
+            assertSame(reload, joined, "Expected a second reload request to join the running one");
+            assertEquals(2, loads.get(), "Expected one initial load and one reload");
+            assertEquals("Chase Bank", duringReload.getBankName());
+            assertEquals("Citibank", validator.identifyIssuerIfValid(CHASE_CARD).getBankName());
+        } finally {
+            releaseLoad.countDown();
+            executor.shutdown();
+        }
+    }
+
+    // Compiles the CSV rows and replaces bin-ranges.bin, the way an offline BIN update would
+    private Path writeBinFile(String csvRows) throws IOException {
+        Path csv = tempDir.resolve("bin-ranges.csv");
+        Files.writeString(csv, csvRows);
+        Path binFile = tempDir.resolve("bin-ranges.bin");
+        BINDatabase.loadFromCSV(csv).writeBinary(binFile);
+        return binFile;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -11,8 +11,9 @@ public class SetupMethodsBeforeAllExample {
         // Load card network rules once (expensive operation)
         networkRules = CardNetworkRules.loadFromFile("card-network-rules.json");
         
-        // Initialize BIN database once (large dataset)
-        binDatabase = BINDatabase.loadFromCSV("bin-ranges.csv");
+        // Map the precompiled BIN database once (large dataset, no CSV parsing);
+        // bin-ranges.bin is regenerated from bin-ranges.csv with writeBinary
+        binDatabase = BINDatabase.open("bin-ranges.bin");
         
         // These are immutable and can be safely shared across all tests
     }